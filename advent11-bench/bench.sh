@@ -0,0 +1,12 @@
+#!/bin/bash
+
+# Builds the solver and the benchmarks, then runs the benchmarks with the
+# GC profiler so that allocation rates are reported alongside times.
+# Extra arguments go to JMH, e.g. a benchmark name pattern or
+# "-rf json -rff baseline.json" to save results for comparison.
+
+set -e
+cd "$(dirname "$0")"
+mvn -q -f ../advent11/pom.xml install -DskipTests
+mvn -q package
+java -jar target/benchmarks.jar -prof gc "$@"
@@ -0,0 +1,63 @@
+package aoc2016day11;
+
+/**
+ * Start buildings shared by the benchmarks, by name so that they can be
+ * chosen with JMH's {@code -p building=...}.
+ */
+final class BenchmarkBuildings {
+
+    private static final String PAIRS_PREFIX = "pairs";
+
+    private BenchmarkBuildings() {
+    }
+
+    /**
+     * @param name {@code puzzle}, {@code partTwo}, or {@code pairsN} for N
+     * paired elements that all start on the first of four floors
+     * @return the building
+     */
+    public static Building named(String name) {
+        switch (name) {
+            case "puzzle":
+                return Buildings.createPuzzleInputBuilding();
+            case "partTwo":
+                return Buildings.createPartTwoPuzzleInputBuilding();
+            default:
+                if (name.startsWith(PAIRS_PREFIX)) {
+                    return pairs(Integer.parseInt(name.substring(PAIRS_PREFIX.length())));
+                }
+                throw new IllegalArgumentException("unknown building " + name);
+        }
+    }
+
+    public static Building pairs(int numElements) {
+        Buildings.Builder bb = Buildings.build(4);
+        for (int i = 0; i < numElements; i++) {
+            bb.add(0, 0);
+        }
+        return bb.finish(0);
+    }
+
+    /**
+     * Collects states reachable from a building, breadth first, so that the
+     * micro benchmarks run over a realistic mix of states rather than one.
+     * @param start the building
+     * @param count how many states to collect
+     * @return the states; fewer than {@code count} if fewer are reachable
+     */
+    public static long[] sample(Building start, int count) {
+        Layout layout = start.getLayout();
+        LongArrayList states = new LongArrayList(count);
+        LongHashSet seen = new LongHashSet();
+        states.add(start.state);
+        seen.add(start.canonical);
+        for (int i = 0; i < states.size() && states.size() < count; i++) {
+            layout.forEachSuccessor(states.get(i), next -> {
+                if (states.size() < count && seen.add(layout.canonicalize(next))) {
+                    states.add(next);
+                }
+            });
+        }
+        return states.toArray();
+    }
+}
@@ -0,0 +1,102 @@
+package aoc2016day11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-state costs of the hot paths: move generation, safety checks,
+ * hashing and canonicalization. Each invocation handles the next state of
+ * a sample reachable from the start building. Run with {@code -prof gc}
+ * to see how much each path allocates; the {@link Layout} paths should
+ * allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildingBenchmark {
+
+    private static final int SAMPLE_SIZE = 1 << 12;
+
+    @Param({"puzzle", "partTwo", "pairs7"})
+    public String building;
+
+    private Layout layout;
+    private Building[] buildings;
+    private long[] states;
+    private long[] successors, canonicals;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Building start = BenchmarkBuildings.named(building);
+        layout = start.getLayout();
+        states = BenchmarkBuildings.sample(start, SAMPLE_SIZE);
+        buildings = new Building[states.length];
+        for (int i = 0; i < states.length; i++) {
+            buildings[i] = new Building(layout, states[i]);
+        }
+        successors = new long[layout.maxSuccessors()];
+        canonicals = new long[successors.length];
+    }
+
+    private int next() {
+        int i = cursor;
+        cursor = i + 1 == states.length ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public Object findValidMoves() {
+        return buildings[next()].findValidMoves();
+    }
+
+    @Benchmark
+    public void computeReachable(Blackhole bh) {
+        buildings[next()].computeReachable(b -> true).forEach(bh::consume);
+    }
+
+    @Benchmark
+    public int successors() {
+        return layout.successors(states[next()], successors);
+    }
+
+    @Benchmark
+    public int distinctSuccessors() {
+        return layout.distinctSuccessors(states[next()], successors, canonicals);
+    }
+
+    @Benchmark
+    public boolean isSafe() {
+        return layout.isSafe(states[next()]);
+    }
+
+    @Benchmark
+    public int buildingHashCode() {
+        return new Building(layout, states[next()]).hashCode();
+    }
+
+    @Benchmark
+    public long canonicalize() {
+        return layout.canonicalize(states[next()]);
+    }
+
+    @Benchmark
+    public int lowerBound() {
+        return layout.lowerBound(states[next()]);
+    }
+}
@@ -0,0 +1,68 @@
+package aoc2016day11;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end solves. Every invocation builds a fresh agent and solves from
+ * scratch, so the time and the allocation reported by {@code -prof gc}
+ * include the agent's tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SolveBenchmark {
+
+    private static final int MAX_MOVES = 128;
+
+    @Param({"puzzle", "partTwo", "pairs5"})
+    public String building;
+
+    @Param({"bfs", "astar", "parallel", "bidirectional"})
+    public String agent;
+
+    private Building start;
+
+    @Setup
+    public void setUp() {
+        start = BenchmarkBuildings.named(building);
+        if (!createAgent(agent).play(start).isPresent()) {
+            throw new IllegalStateException("no solution for " + building);
+        }
+    }
+
+    static Agent createAgent(String name) {
+        switch (name) {
+            case "bfs":
+                return new BreadthFirstAgent(MAX_MOVES);
+            case "astar":
+                return new AStarAgent(MAX_MOVES);
+            case "parallel":
+                return new ParallelBreadthFirstAgent(MAX_MOVES);
+            case "bidirectional":
+                return new BidirectionalAgent(MAX_MOVES);
+            default:
+                throw new IllegalArgumentException("unknown agent " + name);
+        }
+    }
+
+    @Benchmark
+    public List<Building> play() {
+        return createAgent(agent).play(start).get();
+    }
+}
@@ -0,0 +1,96 @@
+package aoc2016day11;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Agent that expands states in order of moves so far plus
+ * {@link Layout#lowerBound(long) a lower bound} on the moves remaining.
+ * The bound is consistent, so the first time a state is expanded its
+ * path is optimal. Costs are small integers, so the open list is an array
+ * of buckets indexed by estimated total; within a bucket the most recently
+ * added state is expanded first, which favors deeper states.
+ */
+public class AStarAgent extends Agent {
+
+    private long numExpanded;
+
+    public AStarAgent(int maxMoves) {
+        super(maxMoves);
+    }
+
+    /**
+     * @return number of states expanded during the last play
+     */
+    public long getNumExpanded() {
+        return numExpanded;
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        numExpanded = 0;
+        Layout layout = start.getLayout();
+        List<LongArrayList> open = new ArrayList<>();
+        LongLongHashMap bestCost = new LongLongHashMap();
+        LongLongHashMap parents = new LongLongHashMap();
+        LongHashSet closed = new LongHashSet();
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        int startEstimate = layout.lowerBound(start.state);
+        if (startEstimate > maxMoves) {
+            return Optional.empty();
+        }
+        push(open, startEstimate, start.state);
+        bestCost.put(start.canonical, 0);
+        Progress progress = new Progress(bestCost::size);
+        for (int estimate = startEstimate; estimate < open.size(); estimate++) {
+            LongArrayList bucket = open.get(estimate);
+            progress.flush();
+            listener.depthReached(estimate, bucket.size(), bestCost.size());
+            while (!bucket.isEmpty()) {
+                long current = bucket.removeLast();
+                long currentCanonical = layout.canonicalize(current);
+                if (!closed.add(currentCanonical)) {
+                    continue;
+                }
+                if (layout.isWin(current)) {
+                    progress.flush();
+                    return Optional.of(tracePath(layout, start, current, parents));
+                }
+                numExpanded++;
+                long cost = bestCost.get(currentCanonical) + 1;
+                int count = layout.distinctSuccessors(current, successors, canonicals, pruner);
+                int duplicates = 0;
+                for (int i = 0; i < count; i++) {
+                    long canonical = canonicals[i];
+                    if (closed.contains(canonical) || bestCost.get(canonical, Long.MAX_VALUE) <= cost) {
+                        duplicates++;
+                        continue;
+                    }
+                    int total = (int) cost + layout.lowerBound(successors[i]);
+                    if (total <= maxMoves) {
+                        bestCost.put(canonical, cost);
+                        parents.put(canonical, current);
+                        push(open, total, successors[i]);
+                    }
+                }
+                progress.expanded(count, duplicates);
+            }
+        }
+        progress.flush();
+        return Optional.empty();
+    }
+
+    private static void push(List<LongArrayList> open, int estimate, long state) {
+        while (open.size() <= estimate) {
+            open.add(new LongArrayList());
+        }
+        open.get(estimate).add(state);
+    }
+
+    public static void main(String[] args) {
+        Building building = Buildings.createPartTwoPuzzleInputBuilding();
+        Agent agent = new AStarAgent(64).toggleVerbose();
+        attempt(agent, building);
+    }
+}
@@ -1,10 +1,16 @@
 package aoc2016day11;
 
 import javax.annotation.Nullable;
+import javax.management.MBeanServer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.LongUnaryOperator;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -12,8 +18,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public abstract class Agent {
 
     protected final int maxMoves;
+    protected MovePruner pruner = MovePruner.NONE;
+    protected SearchListener listener = SearchListener.NONE;
+    private @Nullable MBeanServer mbeanServer = SearchStats.defaultServer();
+    private boolean monitoring;
     private boolean verbose;
-    private static int attemptCountPrintInterval = 1000000;
+    private SearchReporter verboseReporter;
+    private static final long VERBOSE_REPORT_INTERVAL_MILLIS = 1000;
 
     public Agent(int maxMoves) {
         this.maxMoves = maxMoves;
@@ -22,11 +33,76 @@ public abstract class Agent {
 
     /**
      * Play until you get a win, or return empty if winning is impossible.
+     * If this agent is {@link #monitorWith(MBeanServer) set to monitor},
+     * {@link SearchStats statistics} of the search are registered as an
+     * MBean while it runs, so that it can be watched and cancelled from a
+     * JMX client.
      *
      * @param start starting position
      * @return the path that won; absent if no path won in this agent's max moves
+     * @throws CancellationException if the search was cancelled through the
+     * listener or the MBean
      */
-    public abstract Optional<List<Building>> play(Building start);
+    public final Optional<List<Building>> play(Building start) {
+        return monitored(() -> solve(start));
+    }
+
+    /**
+     * Does the work of {@link #play(Building)}.
+     */
+    protected abstract Optional<List<Building>> solve(Building start);
+
+    protected interface Task<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * Runs a search with its statistics registered, if this agent monitors.
+     * Any listener already attached keeps receiving events. A search run
+     * from within another one is registered only once.
+     */
+    protected final <T, E extends Exception> T monitored(Task<T, E> task) throws E {
+        if (mbeanServer == null || monitoring) {
+            return task.run();
+        }
+        SearchListener previous = listener;
+        SearchStats stats = new SearchStats(getClass().getSimpleName());
+        SearchStats.Registration registration = stats.register(mbeanServer);
+        listener = SearchListener.combine(stats, previous);
+        monitoring = true;
+        try {
+            return task.run();
+        } finally {
+            monitoring = false;
+            listener = previous;
+            registration.close();
+        }
+    }
+
+    /**
+     * Sets the MBean server with which every search registers its
+     * statistics. The default is the platform MBean server if the system
+     * property {@value SearchStats#MONITOR_PROPERTY} is true, else none.
+     * @param server the server, or null for no registration
+     * @return this agent
+     */
+    public Agent monitorWith(@Nullable MBeanServer server) {
+        this.mbeanServer = server;
+        return this;
+    }
+
+    public @Nullable MBeanServer getMBeanServer() {
+        return mbeanServer;
+    }
+
+    /**
+     * @throws CancellationException if the listener asks the search to stop
+     */
+    protected void checkCancelled() {
+        if (listener.isCancelled()) {
+            throw new CancellationException(getClass().getSimpleName() + " cancelled");
+        }
+    }
 
     protected static <E> List<E> append(List<E> previous, E tail) {
         List<E> next = new ArrayList<>(previous.size() + 1);
@@ -35,19 +111,232 @@ public abstract class Agent {
         return Collections.unmodifiableList(next);
     }
 
+    /**
+     * Rebuilds a path by following parents back from its last state. The
+     * map holds, for the canonical form of each state reached, the state it
+     * was reached from. Because states are keyed by canonical form, the
+     * result is {@link #relabel(List) relabeled} before it is returned.
+     * @param layout the layout
+     * @param start the first state
+     * @param end the last state
+     * @param parents map from canonical state to parent state
+     * @return the path from start to end
+     */
+    protected static List<Building> tracePath(Layout layout, Building start, long end, LongLongHashMap parents) {
+        return relabel(traceCanonicalPath(layout, start, end, parents::get));
+    }
+
+    /**
+     * Rebuilds a path by following parents back from its last state, without
+     * relabeling. Consecutive states are adjacent up to a swap of elements.
+     * @param parentOf maps the canonical form of a state to its parent state
+     */
+    protected static List<Building> traceCanonicalPath(Layout layout, Building start, long end, LongUnaryOperator parentOf) {
+        List<Building> path = new ArrayList<>();
+        long current = end, canonical = layout.canonicalize(end);
+        while (canonical != start.canonical) {
+            path.add(new Building(layout, current, canonical));
+            current = parentOf.applyAsLong(canonical);
+            canonical = layout.canonicalize(current);
+        }
+        path.add(start);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Rebuilds a path for a breadth-first search that kept its levels but
+     * not the parents of its states, by finding, level by level backward,
+     * a neighbor of the state traced so far. Moves are reversible, so such a
+     * neighbor exists in every level. The result is
+     * {@link #relabel(List) relabeled} before it is returned.
+     * @param layout the layout
+     * @param start the first state, the only one in level 0
+     * @param numLevels how many levels there are
+     * @param level tests whether a canonical state is in the level at a depth
+     * @param end a state one move beyond the last level
+     * @return the path from start to end
+     * @throws IllegalStateException if some level holds no neighbor
+     */
+    protected static List<Building> traceLevels(Layout layout, Building start, int numLevels, IntFunction<LongPredicate> level, long end) {
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        List<Building> path = new ArrayList<>(numLevels + 1);
+        long current = end;
+        path.add(new Building(layout, current, layout.canonicalize(current)));
+        for (int depth = numLevels - 1; depth > 0; depth--) {
+            LongPredicate inLevel = level.apply(depth);
+            int count = layout.distinctSuccessors(current, successors, canonicals);
+            long parent = current;
+            for (int i = 0; i < count && parent == current; i++) {
+                if (inLevel.test(canonicals[i])) {
+                    parent = canonicals[i];
+                }
+            }
+            if (parent == current) {
+                throw new IllegalStateException("no neighbor of " + current + " at depth " + depth);
+            }
+            path.add(new Building(layout, parent, parent));
+            current = parent;
+        }
+        path.add(start);
+        Collections.reverse(path);
+        return relabel(path);
+    }
+
+    /**
+     * Rewrites a path whose consecutive states are adjacent only up to a
+     * swap of elements, such as a path spliced from canonical states, so that
+     * every step is a real move from the previous building.
+     * @param path the path; the first building is kept as is
+     * @return the relabeled path
+     * @throws IllegalStateException if some step is not a valid move
+     */
+    protected static List<Building> relabel(List<Building> path) {
+        List<Building> relabeled = new ArrayList<>(path.size());
+        Building current = path.get(0);
+        relabeled.add(current);
+        for (Building next : path.subList(1, path.size())) {
+            current = current.computeReachable(next::equals).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("no move to " + next));
+            relabeled.add(current);
+        }
+        return relabeled;
+    }
+
+    /**
+     * Replays a path through {@link Building#move(Direction, List)}, so that
+     * every step is checked against the rules rather than taken from a
+     * search's own bookkeeping.
+     * @param path the path
+     * @throws IllegalStateException if some step is not a valid move or the
+     * path does not end in a win
+     */
+    protected static void checkReplays(List<Building> path) {
+        Building current = path.get(0);
+        for (Building next : path.subList(1, path.size())) {
+            Building.Move step = current.findValidMoves().stream()
+                    .filter(move -> move.to.state == next.state)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("no move to " + next));
+            current = current.move(step.direction, step.targets);
+        }
+        if (!current.isWin()) {
+            throw new IllegalStateException("path does not end in a win: " + current);
+        }
+    }
+
+    /**
+     * Sets the rules for skipping moves while expanding states. A pruner
+     * that is not exact may make the agent miss the shortest path.
+     * @param pruner the pruner
+     * @return this agent
+     */
+    public Agent usePruner(MovePruner pruner) {
+        this.pruner = checkNotNull(pruner);
+        return this;
+    }
+
+    public MovePruner getPruner() {
+        return pruner;
+    }
+
+    /**
+     * Sets the listener that receives progress events.
+     * @param listener the listener
+     * @return this agent
+     */
+    public Agent listenWith(SearchListener listener) {
+        this.listener = checkNotNull(listener);
+        return this;
+    }
+
+    public SearchListener getListener() {
+        return listener;
+    }
+
     public boolean isVerbose() {
         return verbose;
     }
 
+    /**
+     * Toggles summary output. Turning it on also attaches a
+     * {@link SearchReporter} that prints progress to standard output every
+     * second, unless another listener is already attached.
+     * @return this agent
+     */
     public Agent toggleVerbose() {
         verbose = !verbose;
+        if (verbose && listener == SearchListener.NONE) {
+            verboseReporter = new SearchReporter(System.out::println, VERBOSE_REPORT_INTERVAL_MILLIS);
+            listener = verboseReporter;
+        } else if (!verbose && listener == verboseReporter) {
+            listener = SearchListener.NONE;
+        }
         return this;
     }
 
-    @SuppressWarnings("SameParameterValue")
-    protected void maybePrintAttempts(long attempts) {
-        if (verbose && (attempts % attemptCountPrintInterval == 0)) {
-            System.out.format("%d attempts so far%n", attempts);
+    /**
+     * Counts expansions and hands them to the listener in batches, so that
+     * the listener is not called once per state. Each batch is also when
+     * the search checks whether it has been cancelled. One instance per thread.
+     */
+    protected final class Progress {
+
+        private static final int BATCH_SIZE = 4096;
+
+        private final @Nullable LongSupplier visitedSize;
+        private long expanded, generated, duplicates;
+
+        public Progress() {
+            this(null);
+        }
+
+        /**
+         * @param visitedSize reads the number of distinct states the search
+         *                    holds, which is reported with every batch
+         */
+        public Progress(@Nullable LongSupplier visitedSize) {
+            this.visitedSize = visitedSize;
+        }
+
+        /**
+         * @param generated successors of the state that were generated
+         * @param duplicates how many of them had already been seen
+         */
+        public void expanded(int generated, int duplicates) {
+            this.generated += generated;
+            this.duplicates += duplicates;
+            if (++expanded == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Reports states expanded as a group, for searches that learn which
+         * of their successors were duplicates only once the group is done.
+         * @param states states expanded
+         * @param generated successors of them that were generated
+         * @param duplicates how many of those had already been seen
+         */
+        public void expanded(long states, long generated, long duplicates) {
+            checkArgument(duplicates <= generated, "%s duplicates of %s generated", duplicates, generated);
+            this.expanded += states;
+            this.generated += generated;
+            this.duplicates += duplicates;
+            if (expanded >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        public void flush() {
+            if (expanded > 0 || generated > 0) {
+                listener.statesExpanded(expanded, generated, duplicates);
+            }
+            if (visitedSize != null) {
+                listener.visitedSizeUpdated(visitedSize.getAsLong());
+            }
+            expanded = generated = duplicates = 0;
+            checkCancelled();
         }
     }
 
@@ -62,34 +351,4 @@ public abstract class Agent {
         }
     }
 
-    protected static class Node {
-        public final Building label;
-        public @Nullable  final Node parent;
-        public final int level;
-
-        public Node(Building label, @Nullable Node parent) {
-            this(label, parent, parent == null ? 0 : parent.level + 1);
-        }
-
-        private Node(Building label, @Nullable Node parent, int level) {
-            this.label = checkNotNull(label);
-            this.parent = parent;
-            this.level = level;
-        }
-
-        public static Node root(Building building) {
-            return new Node(building, null, 0);
-        }
-
-        public List<Building> path() {
-            List<Building> path = new ArrayList<>();
-            Node current = this;
-            while (current != null) {
-                path.add(current.label);
-                current = current.parent;
-            }
-            return path;
-        }
-    }
-
 }
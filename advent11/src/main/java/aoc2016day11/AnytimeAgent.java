@@ -0,0 +1,322 @@
+package aoc2016day11;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Agent that works within a budget of time or expansions and returns the
+ * best path found when the budget runs out, together with a proven lower
+ * bound on the moves needed. It runs weighted A* passes with decreasing
+ * weights, starting almost greedy, and each pass starts over from the
+ * start. A pass with a weight above 1 ends as soon as it improves on the
+ * best path so far. The last pass, with weight 1, runs until no state
+ * could lead to a shorter path, which proves the best path optimal.
+ * States whose moves so far plus {@link Layout#lowerBound(long) lower bound}
+ * reach the length of the best path are pruned in every pass.
+ * <p>
+ * States are reopened when they are reached with fewer moves. Therefore
+ * some open state always lies on a shortest path with the fewest moves
+ * to reach it. The smallest moves-plus-bound among open states, or the
+ * length of the best path if that is smaller, is then a lower bound at
+ * any point in any pass.
+ */
+public class AnytimeAgent extends Agent {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final double[] DEFAULT_WEIGHTS = {16, 5, 3, 2, 1.5, 1.25, 1};
+
+    private static final int WEIGHT_SCALE = 4;
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+
+    public static class Result {
+
+        public final Optional<List<Building>> path;
+        /**
+         * Fewest moves any path could take; {@code maxMoves + 1} if there
+         * is proven to be no path within the agent's max moves.
+         */
+        public final int lowerBound;
+        /**
+         * Weight of the pass that found the path, or NaN if none was found.
+         */
+        public final double weight;
+        public final long numExpanded;
+        public final boolean budgetExhausted;
+
+        public Result(Optional<List<Building>> path, int lowerBound, double weight, long numExpanded, boolean budgetExhausted) {
+            this.path = checkNotNull(path);
+            this.lowerBound = lowerBound;
+            this.weight = weight;
+            this.numExpanded = numExpanded;
+            this.budgetExhausted = budgetExhausted;
+        }
+
+        /**
+         * @return the number of moves of the path, or -1 if there is none
+         */
+        public int getMoves() {
+            return path.map(Buildings::countMoves).orElse(-1);
+        }
+
+        public boolean isOptimal() {
+            return path.isPresent() && getMoves() == lowerBound;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Result{moves=%d, lowerBound=%d, weight=%s, numExpanded=%d, budgetExhausted=%s}",
+                    getMoves(), lowerBound, weight, numExpanded, budgetExhausted);
+        }
+    }
+
+    private long timeBudgetMillis = UNLIMITED;
+    private long expansionBudget = UNLIMITED;
+    private double[] weights = DEFAULT_WEIGHTS;
+
+    public AnytimeAgent(int maxMoves) {
+        super(maxMoves);
+    }
+
+    /**
+     * @param millis time allowed for each play, or {@link #UNLIMITED}
+     * @return this agent
+     */
+    public AnytimeAgent withTimeBudget(long millis) {
+        checkArgument(millis >= 0, "millis %s", millis);
+        this.timeBudgetMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param expansions states that may be expanded in each play, or {@link #UNLIMITED}
+     * @return this agent
+     */
+    public AnytimeAgent withExpansionBudget(long expansions) {
+        checkArgument(expansions >= 0, "expansions %s", expansions);
+        this.expansionBudget = expansions;
+        return this;
+    }
+
+    /**
+     * Sets the weights of the passes. The last weight should be 1 for the
+     * agent to be able to prove a path optimal.
+     * @param weights decreasing weights, each at least 1
+     * @return this agent
+     */
+    public AnytimeAgent withWeights(double... weights) {
+        checkArgument(weights.length > 0, "no weights");
+        for (int i = 0; i < weights.length; i++) {
+            checkArgument(weights[i] >= 1, "weight %s < 1", weights[i]);
+            checkArgument(i == 0 || weights[i] < weights[i - 1], "weights must decrease: %s", Arrays.toString(weights));
+        }
+        this.weights = weights.clone();
+        return this;
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        return searchPasses(start).path;
+    }
+
+    /**
+     * Searches until the best path is proven optimal, or proven not to
+     * exist, or the budget runs out.
+     * @param start starting position
+     * @return the best path found and a lower bound
+     */
+    public Result search(Building start) {
+        return monitored(() -> searchPasses(start));
+    }
+
+    private Result searchPasses(Building start) {
+        if (start.isWin()) {
+            return new Result(Optional.of(Collections.singletonList(start)), 0, Double.NaN, 0, false);
+        }
+        Search search = new Search(start);
+        int lowerBound = Math.min(start.getLayout().lowerBound(start.state), maxMoves + 1);
+        for (double weight : weights) {
+            if (lowerBound >= search.incumbentMoves) {
+                break;
+            }
+            Search.Pass pass = search.new Pass(weight);
+            boolean finished = pass.run();
+            lowerBound = Math.max(lowerBound, Math.min(search.incumbentMoves, pass.minOpenEstimate()));
+            if (!finished) {
+                search.progress.flush();
+                return search.result(lowerBound, true);
+            }
+        }
+        search.progress.flush();
+        return search.result(lowerBound, false);
+    }
+
+    /**
+     * State shared by the passes of one play: the best path so far and
+     * what is left of the budget.
+     */
+    private class Search {
+
+        final Building start;
+        final Layout layout;
+        final long startNanos = System.nanoTime();
+        final long[] successors, canonicals;
+        @Nullable Pass pass;
+        final Progress progress = new Progress(() -> pass == null ? 0 : pass.bestMoves.size());
+        long numExpanded;
+        @Nullable List<Building> incumbent;
+        int incumbentMoves;
+        double incumbentWeight = Double.NaN;
+
+        Search(Building start) {
+            this.start = start;
+            this.layout = start.getLayout();
+            successors = new long[layout.maxSuccessors()];
+            canonicals = new long[successors.length];
+            incumbentMoves = maxMoves + 1;
+        }
+
+        boolean isBudgetExhausted() {
+            if (numExpanded >= expansionBudget) {
+                return true;
+            }
+            return timeBudgetMillis != UNLIMITED && numExpanded % CLOCK_CHECK_INTERVAL == 0
+                    && System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        }
+
+        Result result(int lowerBound, boolean budgetExhausted) {
+            return new Result(Optional.ofNullable(incumbent), lowerBound, incumbentWeight, numExpanded, budgetExhausted);
+        }
+
+        /**
+         * One weighted A* pass. Open states are kept in buckets by priority,
+         * {@link #WEIGHT_SCALE} times moves plus the scaled weight times the
+         * lower bound, as pairs of state and moves; a second array counts
+         * open entries by unweighted estimate, for the lower bound. Entries
+         * superseded by a state being reached in fewer moves stay in both
+         * until they are popped, which can only make the bound lower.
+         */
+        class Pass {
+
+            final double weight;
+            final int scaledWeight;
+            final List<LongArrayList> open = new ArrayList<>();
+            final int[] openEstimates = new int[maxMoves + 2];
+            final LongLongHashMap bestMoves = new LongLongHashMap();
+            final LongLongHashMap parents = new LongLongHashMap();
+            int cursor;
+
+            Pass(double weight) {
+                this.weight = weight;
+                this.scaledWeight = (int) Math.round(weight * WEIGHT_SCALE);
+                pass = this;
+            }
+
+            void push(long state, int moves, int bound) {
+                int priority = WEIGHT_SCALE * moves + scaledWeight * bound;
+                while (open.size() <= priority) {
+                    open.add(new LongArrayList());
+                }
+                LongArrayList bucket = open.get(priority);
+                bucket.add(state);
+                bucket.add(moves);
+                openEstimates[moves + bound]++;
+                cursor = Math.min(cursor, priority);
+            }
+
+            int minOpenEstimate() {
+                for (int estimate = 0; estimate < openEstimates.length; estimate++) {
+                    if (openEstimates[estimate] > 0) {
+                        return estimate;
+                    }
+                }
+                return Integer.MAX_VALUE;
+            }
+
+            /**
+             * Pops states in order of priority. With a weight above 1 a
+             * successor may have a lower priority than its parent, so the
+             * cursor moves back to the lowest bucket pushed to.
+             * @return false if the budget ran out before the pass finished
+             */
+            boolean run() {
+                push(start.state, 0, layout.lowerBound(start.state));
+                bestMoves.put(start.canonical, 0);
+                while (cursor < open.size()) {
+                    LongArrayList bucket = open.get(cursor);
+                    if (bucket.isEmpty()) {
+                        cursor++;
+                        continue;
+                    }
+                    int moves = (int) bucket.removeLast();
+                    long current = bucket.removeLast();
+                    int bound = layout.lowerBound(current);
+                    openEstimates[moves + bound]--;
+                    long canonical = layout.canonicalize(current);
+                    if (moves > bestMoves.get(canonical) || moves + bound >= incumbentMoves) {
+                        continue;
+                    }
+                    if (isBudgetExhausted()) {
+                        openEstimates[moves + bound]++;
+                        return false;
+                    }
+                    if (expand(current, moves) && weight > 1) {
+                        return true;
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * @return true if a path shorter than the best so far was found
+             */
+            boolean expand(long current, int moves) {
+                numExpanded++;
+                int count = layout.distinctSuccessors(current, successors, canonicals, pruner);
+                int duplicates = 0;
+                boolean improved = false;
+                for (int i = 0; i < count; i++) {
+                    int nextMoves = moves + 1;
+                    if (nextMoves >= bestMoves.get(canonicals[i], Long.MAX_VALUE)) {
+                        duplicates++;
+                        continue;
+                    }
+                    int bound = layout.lowerBound(successors[i]);
+                    if (nextMoves + bound >= incumbentMoves) {
+                        continue;
+                    }
+                    bestMoves.put(canonicals[i], nextMoves);
+                    parents.put(canonicals[i], current);
+                    if (layout.isWin(successors[i])) {
+                        incumbent = tracePath(layout, start, successors[i], parents);
+                        incumbentMoves = Buildings.countMoves(incumbent);
+                        incumbentWeight = weight;
+                        improved = true;
+                    } else {
+                        push(successors[i], nextMoves, bound);
+                    }
+                }
+                progress.expanded(count, duplicates);
+                return improved;
+            }
+        }
+    }
+
+    /**
+     * Usage: {@code AnytimeAgent [MILLIS]}
+     */
+    public static void main(String[] args) {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        AnytimeAgent agent = new AnytimeAgent(64).withTimeBudget(millis);
+        Result result = agent.search(Buildings.createPartTwoPuzzleInputBuilding());
+        System.out.println(result);
+        result.path.ifPresent(path -> Buildings.dump(path, System.out));
+    }
+}
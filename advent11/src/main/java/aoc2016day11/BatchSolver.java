@@ -0,0 +1,181 @@
+package aoc2016day11;
+
+import javax.annotation.Nullable;
+import javax.management.MBeanServer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Solves many starts of the same layout with one breadth-first search
+ * backward from the goal. Each start is resolved as soon as the search
+ * reaches it, so solutions are delivered in order of increasing moves
+ * while the search is still running; the search stops when every start
+ * is resolved or the move limit is reached. The backward search only
+ * passes through safe states, so an unsafe start has no solution.
+ */
+public class BatchSolver {
+
+    public static class Solution {
+
+        public final Building start;
+        public final Optional<List<Building>> path;
+
+        public Solution(Building start, Optional<List<Building>> path) {
+            this.start = checkNotNull(start);
+            this.path = checkNotNull(path);
+        }
+
+        /**
+         * @return the number of moves to win, or -1 if there is no solution
+         */
+        public int getMoves() {
+            return path.map(Buildings::countMoves).orElse(-1);
+        }
+
+        @Override
+        public String toString() {
+            return "Solution{moves=" + getMoves() + "}";
+        }
+    }
+
+    private final int maxMoves;
+    private SearchListener listener = SearchListener.NONE;
+    private @Nullable MBeanServer mbeanServer = SearchStats.defaultServer();
+
+    public BatchSolver(int maxMoves) {
+        checkArgument(maxMoves >= 0, "maxMoves >= 0");
+        this.maxMoves = maxMoves;
+    }
+
+    /**
+     * Sets the listener that receives progress events, one batch per level.
+     * @param listener the listener
+     * @return this solver
+     */
+    public BatchSolver listenWith(SearchListener listener) {
+        this.listener = checkNotNull(listener);
+        return this;
+    }
+
+    /**
+     * Sets the MBean server with which every solve registers its
+     * {@link SearchStats statistics}, as {@link Agent#monitorWith(MBeanServer)} does.
+     * @param server the server, or null for no registration
+     * @return this solver
+     */
+    public BatchSolver monitorWith(@Nullable MBeanServer server) {
+        this.mbeanServer = server;
+        return this;
+    }
+
+    /**
+     * Solves every start, passing each solution to the sink as soon as it
+     * is known. Starts with no solution within the move limit are passed
+     * last, with an empty path. The search is
+     * {@link Tablebase#searchBackward Tablebase's backward search}, stopped
+     * as soon as every start is resolved.
+     * @param starts the starts; all must have the same layout
+     * @param sink the consumer of solutions
+     * @throws IllegalArgumentException if the layouts differ, before any
+     * solution is passed to the sink
+     */
+    public void solve(Collection<Building> starts, Consumer<Solution> sink) {
+        if (mbeanServer == null) {
+            solve(starts, sink, listener);
+            return;
+        }
+        SearchStats stats = new SearchStats(getClass().getSimpleName());
+        SearchStats.Registration registration = stats.register(mbeanServer);
+        try {
+            solve(starts, sink, SearchListener.combine(stats, listener));
+        } finally {
+            registration.close();
+        }
+    }
+
+    private void solve(Collection<Building> starts, Consumer<Solution> sink, SearchListener listener) {
+        if (starts.isEmpty()) {
+            return;
+        }
+        Layout layout = starts.iterator().next().getLayout();
+        for (Building start : starts) {
+            checkArgument(layout.equals(start.getLayout()), "layout %s differs from %s", start.getLayout(), layout);
+        }
+        Map<Long, List<Building>> pending = new HashMap<>();
+        for (Building start : starts) {
+            if (start.isWin()) {
+                sink.accept(new Solution(start, Optional.of(Collections.singletonList(start))));
+            } else {
+                pending.computeIfAbsent(start.canonical, k -> new ArrayList<>()).add(start);
+            }
+        }
+        Building goal = new Building(layout, layout.winState());
+        LongLongHashMap towardGoal = new LongLongHashMap();
+        towardGoal.put(goal.canonical, goal.state);
+        if (!pending.isEmpty()) {
+            Tablebase.searchBackward(layout, maxMoves, new Tablebase.RetrogradeVisitor() {
+                @Override
+                public boolean visit(long canonical, long parent, int depth) {
+                    if (!towardGoal.putIfAbsent(canonical, parent)) {
+                        return false;
+                    }
+                    List<Building> resolved = pending.remove(canonical);
+                    if (resolved != null) {
+                        for (Building start : resolved) {
+                            sink.accept(new Solution(start, Optional.of(path(layout, start, goal, towardGoal))));
+                        }
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean levelDone(int depth, long expanded, long generated, long levelSize) {
+                    listener.statesExpanded(expanded, generated, generated - levelSize);
+                    listener.depthReached(depth, levelSize, towardGoal.size());
+                    return !pending.isEmpty();
+                }
+            });
+        }
+        pending.values().forEach(unresolved -> unresolved.forEach(start -> sink.accept(new Solution(start, Optional.empty()))));
+    }
+
+    /**
+     * Solves every start and collects the solutions in the order they were found.
+     */
+    public List<Solution> solveAll(Collection<Building> starts) {
+        List<Solution> solutions = new ArrayList<>(starts.size());
+        solve(starts, solutions::add);
+        return solutions;
+    }
+
+    private static List<Building> path(Layout layout, Building start, Building goal, LongLongHashMap towardGoal) {
+        List<Building> path = new ArrayList<>();
+        path.add(start);
+        long canonical = start.canonical;
+        while (canonical != goal.canonical) {
+            long state = towardGoal.get(canonical);
+            canonical = layout.canonicalize(state);
+            path.add(new Building(layout, state, canonical));
+        }
+        return Agent.relabel(path);
+    }
+
+    public static void main(String[] args) {
+        List<Building> starts = new ArrayList<>();
+        for (int elevator = 0; elevator < 4; elevator++) {
+            for (int floor = 0; floor < 4; floor++) {
+                starts.add(Buildings.build(4).add(1, 0).add(2, 2).add(2, 2).add(1, 0).add(floor, floor).finish(Math.min(elevator, 2)));
+            }
+        }
+        new BatchSolver(64).listenWith(new SearchReporter(System.out::println, 0)).solve(starts, solution -> System.out.format("%s%d moves to win%n", solution.start, solution.getMoves()));
+    }
+}
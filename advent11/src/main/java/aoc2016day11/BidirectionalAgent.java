@@ -0,0 +1,120 @@
+package aoc2016day11;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Agent that searches forward from the start and backward from the goal,
+ * where every item and the elevator are on the top floor. Moves are
+ * reversible, so the backward search uses the same successor function.
+ * Each round expands a whole level of whichever frontier is smaller, and
+ * the search ends after the first level in which the two searches meet.
+ */
+public class BidirectionalAgent extends Agent {
+
+    private static final long NO_MEETING = -1L;
+
+    public BidirectionalAgent(int maxMoves) {
+        super(maxMoves);
+    }
+
+    private static class Side {
+        private final Building root;
+        private final LongLongHashMap parents = new LongLongHashMap();
+        private LongArrayList frontier = new LongArrayList();
+        private int depth;
+
+        public Side(Building root) {
+            this.root = root;
+            parents.put(root.canonical, root.state);
+            frontier.add(root.state);
+        }
+
+        /**
+         * @return the number of moves between the root and a state this side has seen
+         */
+        public int distance(Layout layout, long canonical) {
+            int distance = 0;
+            while (canonical != root.canonical) {
+                canonical = layout.canonicalize(parents.get(canonical));
+                distance++;
+            }
+            return distance;
+        }
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        if (start.isWin()) {
+            return Optional.of(Collections.singletonList(start));
+        }
+        Layout layout = start.getLayout();
+        Side forward = new Side(start);
+        Side backward = new Side(new Building(layout, layout.winState()));
+        while (!forward.frontier.isEmpty() && !backward.frontier.isEmpty() && forward.depth + backward.depth < maxMoves) {
+            boolean expandForward = forward.frontier.size() <= backward.frontier.size();
+            long meeting = expandForward ? expand(layout, forward, backward, pruner) : expand(layout, backward, forward, MovePruner.NONE);
+            listener.depthReached(forward.depth + backward.depth, forward.frontier.size() + backward.frontier.size(),
+                    forward.parents.size() + backward.parents.size());
+            if (meeting != NO_MEETING) {
+                return Optional.of(splice(layout, forward, backward, meeting));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Expands the frontier of one side by a level. Moves are reversible, so
+     * the backward side generates successors as well, but pruning rules
+     * hold only for forward moves and are not applied to it.
+     * @return the state in the new level that lies on the shortest path
+     * through it, or {@link #NO_MEETING} if the sides did not meet
+     */
+    private long expand(Layout layout, Side expanding, Side other, MovePruner pruner) {
+        LongArrayList next = new LongArrayList(expanding.frontier.size() * 4);
+        long best = NO_MEETING;
+        int bestDistance = Integer.MAX_VALUE;
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        Progress progress = new Progress(() -> expanding.parents.size() + other.parents.size());
+        for (int j = 0; j < expanding.frontier.size(); j++) {
+            long state = expanding.frontier.get(j);
+            int count = layout.distinctSuccessors(state, successors, canonicals, pruner);
+            int duplicates = 0;
+            for (int i = 0; i < count; i++) {
+                long canonical = canonicals[i];
+                if (!expanding.parents.putIfAbsent(canonical, state)) {
+                    duplicates++;
+                    continue;
+                }
+                next.add(successors[i]);
+                if (other.parents.containsKey(canonical)) {
+                    int distance = other.distance(layout, canonical);
+                    if (distance < bestDistance) {
+                        best = successors[i];
+                        bestDistance = distance;
+                    }
+                }
+            }
+            progress.expanded(count, duplicates);
+        }
+        progress.flush();
+        expanding.frontier = next;
+        expanding.depth++;
+        return best;
+    }
+
+    private static List<Building> splice(Layout layout, Side forward, Side backward, long meeting) {
+        List<Building> path = traceCanonicalPath(layout, forward.root, meeting, forward.parents::get);
+        List<Building> towardGoal = traceCanonicalPath(layout, backward.root, meeting, backward.parents::get);
+        Collections.reverse(towardGoal);
+        path.addAll(towardGoal.subList(1, towardGoal.size()));
+        return relabel(path);
+    }
+
+    public static void main(String[] args) {
+        Building building = Buildings.createPartTwoPuzzleInputBuilding();
+        Agent agent = new BidirectionalAgent(64).toggleVerbose();
+        attempt(agent, building);
+    }
+}
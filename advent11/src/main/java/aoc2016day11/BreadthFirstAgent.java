@@ -1,30 +1,353 @@
 package aoc2016day11;
 
 import javax.annotation.Nullable;
-import java.util.ArrayDeque;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.Queue;
-import java.util.Set;
-import java.util.function.Predicate;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 public class BreadthFirstAgent extends Agent {
 
-    private static final int EXPECTED_QUEUE_SIZE = 10 * 1024 * 1024;
+    private static final int EXPECTED_QUEUE_SIZE = 64 * 1024;
+    private static final int EXPECTED_VISITED_SIZE = 64 * 1024;
+
+    /**
+     * When a state is marked visited and tested for a win. Either way the
+     * search keeps one level of packed states at a time plus a map from
+     * canonical state to parent state, from which the path is traced.
+     */
+    public enum DuplicateDetection {
+
+        /**
+         * Mark and test states as they are dequeued. The same state may be
+         * enqueued once per parent at the same depth.
+         */
+        ON_DEQUEUE,
+
+        /**
+         * Mark and test states as they are generated. Each state is enqueued
+         * at most once and the search ends one level earlier.
+         */
+        ON_GENERATE
+    }
+
+    /**
+     * How the search remembers which states it has seen.
+     */
+    public enum VisitedSet {
+
+        /**
+         * Hash tables keyed by canonical state. The path found is a shortest one.
+         */
+        EXACT,
+
+        /**
+         * A {@link LongBloomFilter}, plus each level as a sorted file on
+         * disk for tracing the path back. A false positive prunes a state that was
+         * never seen, so the path found may be longer than the shortest one,
+         * or no path may be found where one exists.
+         */
+        BLOOM_FILTER
+    }
+
+    private static final int CHECKPOINT_MAGIC = 0x52544743; // "RTGC"
+
+    private final float loadFactor;
+    private DuplicateDetection duplicateDetection = DuplicateDetection.ON_GENERATE;
+    private VisitedSet visitedSet = VisitedSet.EXACT;
+    private long bloomExpectedStates;
+    private double bloomFalsePositiveRate;
+    private @Nullable Path bloomWorkDirectory;
+    private long numExpanded;
+    private int peakQueueSize;
+    private @Nullable VisitedSet lastVisitedSet;
+    private long lastVisitedBytes;
+    private @Nullable Path checkpointFile;
+    private long checkpointIntervalMillis;
 
     public BreadthFirstAgent(int maxMoves) {
+        this(maxMoves, LongHashSet.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * @param maxMoves max moves
+     * @param loadFactor load factor of the visited set; lower trades memory for shorter probes
+     */
+    public BreadthFirstAgent(int maxMoves, float loadFactor) {
         super(maxMoves);
+        this.loadFactor = loadFactor;
+    }
+
+    public BreadthFirstAgent detectDuplicates(DuplicateDetection duplicateDetection) {
+        this.duplicateDetection = checkNotNull(duplicateDetection);
+        return this;
+    }
+
+    public DuplicateDetection getDuplicateDetection() {
+        return duplicateDetection;
+    }
+
+    /**
+     * Makes the search remember visited states in a Bloom filter, which
+     * takes a few bytes per state instead of the tens a hash table takes.
+     * Finished levels are written to files in the system's temporary
+     * directory. States are marked as they are generated, whatever the
+     * duplicate detection mode, and checkpoints are not supported. The path
+     * found is replayed move by move before it is returned.
+     * @param expectedStates how many distinct states the search is expected to reach
+     * @param falsePositiveRate the chance, once that many are reached, that
+     * an unseen state is taken for a seen one
+     * @return this agent
+     * @see VisitedSet#BLOOM_FILTER
+     */
+    public BreadthFirstAgent approximateVisited(long expectedStates, double falsePositiveRate) {
+        return approximateVisited(expectedStates, falsePositiveRate, Paths.get(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Like {@link #approximateVisited(long, double)}, with the level files
+     * in a temporary directory created in the given one.
+     * @param workDirectory directory in which a temporary directory for level files is created
+     * @return this agent
+     */
+    public BreadthFirstAgent approximateVisited(long expectedStates, double falsePositiveRate, Path workDirectory) {
+        checkArgument(expectedStates > 0, "expectedStates %s", expectedStates);
+        checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate %s", falsePositiveRate);
+        this.visitedSet = VisitedSet.BLOOM_FILTER;
+        this.bloomExpectedStates = expectedStates;
+        this.bloomFalsePositiveRate = falsePositiveRate;
+        this.bloomWorkDirectory = checkNotNull(workDirectory);
+        return this;
+    }
+
+    public BreadthFirstAgent exactVisited() {
+        this.visitedSet = VisitedSet.EXACT;
+        return this;
+    }
+
+    public VisitedSet getVisitedSet() {
+        return visitedSet;
+    }
+
+    /**
+     * @return the kind of visited set used by the last play or resume, which
+     * tells whether its answer is known to be optimal; null before the first
+     */
+    @Nullable
+    public VisitedSet getLastVisitedSet() {
+        return lastVisitedSet;
+    }
+
+    /**
+     * @return bytes taken by the visited set, or by the parent map standing
+     * in for it, at the end of the last play; with a Bloom filter, the
+     * largest frontier held in memory is counted too, but not the level
+     * files on disk
+     */
+    public long getLastVisitedBytes() {
+        return lastVisitedBytes;
+    }
+
+    /**
+     * Makes the search save a snapshot of itself at the start of a level
+     * whenever the interval has passed since the last one, so that a run
+     * killed partway can be {@link #resume(Path) resumed}. The snapshot
+     * holds the current level, the parent map, the visited set when there is
+     * one, and the depth. It is written next to the file and then moved over
+     * it, so a crash while writing leaves the previous snapshot intact.
+     * @param file the snapshot file
+     * @param intervalMillis least time between snapshots; zero to save one every level
+     * @return this agent
+     */
+    public BreadthFirstAgent checkpoint(Path file, long intervalMillis) {
+        checkArgument(intervalMillis >= 0, "intervalMillis %s", intervalMillis);
+        this.checkpointFile = checkNotNull(file);
+        this.checkpointIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * @return number of states whose successors were generated during the last play
+     */
+    public long getNumExpanded() {
+        return numExpanded;
+    }
+
+    /**
+     * @return largest queue size reached during the last play
+     */
+    public int getPeakQueueSize() {
+        return peakQueueSize;
     }
 
     @Override
-    public Optional<List<Building>> play(Building start) {
-        Queue<Node> queue = new ArrayDeque<>(EXPECTED_QUEUE_SIZE);
-        Node root = Node.root(start);
-        queue.add(root);
-        List<Building> result = playBF(queue);
-        return Optional.ofNullable(result);
+    protected Optional<List<Building>> solve(Building start) {
+        numExpanded = 0;
+        peakQueueSize = 1;
+        lastVisitedSet = visitedSet;
+        lastVisitedBytes = 0;
+        LongBloomFilter filter = null;
+        try {
+            if (visitedSet == VisitedSet.BLOOM_FILTER) {
+                checkState(checkpointFile == null, "checkpoints are not supported with %s", visitedSet);
+                filter = new LongBloomFilter(bloomExpectedStates, bloomFalsePositiveRate);
+                return Optional.ofNullable(playApproximate(start, filter));
+            }
+            return Optional.ofNullable(playBF(new Search(start, duplicateDetection == DuplicateDetection.ON_GENERATE, loadFactor)));
+        } finally {
+            listener.searchEnded(summarize(duplicateDetection, filter));
+        }
+    }
+
+    private String summarize(DuplicateDetection detection, @Nullable LongBloomFilter filter) {
+        String summary = String.format("%s, %s: %d states expanded; peak queue size = %d; visited set %d bytes",
+                lastVisitedSet, detection, numExpanded, peakQueueSize, lastVisitedBytes);
+        if (filter != null) {
+            summary += String.format("; %d states in Bloom filter with %d hashes; expected false-positive rate now %.2g",
+                    filter.size(), filter.numHashes(), filter.expectedFalsePositiveRate());
+        }
+        return summary;
+    }
+
+    /**
+     * Continues a search from a snapshot saved by an agent configured with
+     * {@link #checkpoint(Path, long)}. The snapshot's duplicate detection
+     * mode is used, whatever this agent's is. Counters start over.
+     * @param checkpoint the snapshot file
+     * @return the path that won; absent if no path won in this agent's max moves
+     * @throws IOException if the snapshot cannot be read
+     */
+    public Optional<List<Building>> resume(Path checkpoint) throws IOException {
+        return monitored(() -> resumeSearch(checkpoint));
+    }
+
+    private Optional<List<Building>> resumeSearch(Path checkpoint) throws IOException {
+        numExpanded = 0;
+        peakQueueSize = 1;
+        Search search = Search.read(checkpoint, loadFactor);
+        lastVisitedSet = VisitedSet.EXACT;
+        lastVisitedBytes = 0;
+        try {
+            return Optional.ofNullable(playBF(search));
+        } finally {
+            listener.searchEnded(summarize(search.onGenerate ? DuplicateDetection.ON_GENERATE : DuplicateDetection.ON_DEQUEUE, null));
+        }
+    }
+
+    /**
+     * Everything a search needs to carry on from the start of a level.
+     */
+    private static final class Search {
+
+        final Building start;
+        final boolean onGenerate;
+        final LongLongHashMap parents;
+        final @Nullable LongHashSet visited;
+        LongArrayList level;
+        int depth;
+
+        Search(Building start, boolean onGenerate, float loadFactor) {
+            this(start, onGenerate, new LongLongHashMap(EXPECTED_VISITED_SIZE, loadFactor),
+                    onGenerate ? null : new LongHashSet(EXPECTED_VISITED_SIZE, loadFactor), new LongArrayList(EXPECTED_QUEUE_SIZE), 0);
+            level.add(start.state);
+            if (onGenerate) {
+                parents.put(start.canonical, start.state);
+            }
+        }
+
+        private Search(Building start, boolean onGenerate, LongLongHashMap parents, @Nullable LongHashSet visited, LongArrayList level, int depth) {
+            this.start = start;
+            this.onGenerate = onGenerate;
+            this.parents = parents;
+            this.visited = visited;
+            this.level = level;
+            this.depth = depth;
+        }
+
+        void write(Path file) throws IOException {
+            Layout layout = start.getLayout();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(CHECKPOINT_MAGIC);
+                out.writeInt(layout.numFloors);
+                out.writeInt(layout.numElements);
+                out.writeInt(layout.capacity);
+                out.writeLong(start.state);
+                out.writeBoolean(onGenerate);
+                out.writeInt(depth);
+                out.writeInt(level.size());
+                for (int i = 0; i < level.size(); i++) {
+                    out.writeLong(level.get(i));
+                }
+                out.writeInt(parents.size());
+                parents.forEach((canonical, parent) -> {
+                    try {
+                        out.writeLong(canonical);
+                        out.writeLong(parent);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.writeInt(visited == null ? -1 : visited.size());
+                if (visited != null) {
+                    visited.forEach(canonical -> {
+                        try {
+                            out.writeLong(canonical);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        static Search read(Path file, float loadFactor) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != CHECKPOINT_MAGIC) {
+                    throw new IOException(file + " is not a search checkpoint");
+                }
+                Layout layout = new Layout(in.readInt(), in.readInt(), in.readInt());
+                Building start = new Building(layout, in.readLong());
+                boolean onGenerate = in.readBoolean();
+                int depth = in.readInt();
+                int levelSize = in.readInt();
+                LongArrayList level = new LongArrayList(Math.max(levelSize, EXPECTED_QUEUE_SIZE));
+                for (int i = 0; i < levelSize; i++) {
+                    level.add(in.readLong());
+                }
+                int numParents = in.readInt();
+                LongLongHashMap parents = new LongLongHashMap(Math.max(numParents, EXPECTED_VISITED_SIZE), loadFactor);
+                for (int i = 0; i < numParents; i++) {
+                    parents.put(in.readLong(), in.readLong());
+                }
+                int numVisited = in.readInt();
+                LongHashSet visited = numVisited < 0 ? null : new LongHashSet(Math.max(numVisited, EXPECTED_VISITED_SIZE), loadFactor);
+                for (int i = 0; i < numVisited; i++) {
+                    visited.add(in.readLong());
+                }
+                if (onGenerate != (visited == null)) {
+                    throw new IOException(file + " is corrupt: visited set does not match duplicate detection mode");
+                }
+                return new Search(start, onGenerate, parents, visited, level, depth);
+            }
+        }
     }
 
 /* https://en.wikipedia.org/wiki/Breadth-first_search
@@ -48,50 +371,181 @@ Breadth-First-Search(Graph, root):
                 Q.enqueue(n)
 
  */
-    private @Nullable List<Building> playBF(Queue<Node> queue) {
-        long maxPossibleStates = queue.peek().label.countMaxPossibleStates();
-        final Set<Long> visited = new HashSet<>(EXPECTED_QUEUE_SIZE);
-        Predicate<Building> isUnvisited = b -> !visited.contains(b.hash);
-        long numAttempts = 0;
-        while (!queue.isEmpty()) {
-            maybePrintAttempts(++numAttempts);
-            if (visited.size() > maxPossibleStates) {
-                throw new IllegalStateException(String.format("%d states have been examined but max possible is %d", visited.size(), maxPossibleStates));
-            }
-            Node current = queue.remove();
-            visited.add(current.label.hash);
-            reachedDepth(current.level, queue.size());
-            if (current.label.isWin()) {
-                List<Building> path = current.path();
-                Collections.reverse(path);
-                return path;
+    /**
+     * Runs the search one level at a time. The parent map doubles as the
+     * visited set when states are marked on generation; when they are marked
+     * on dequeue, a separate set is needed because a state gets a parent as
+     * soon as it is first enqueued.
+     */
+    private @Nullable List<Building> playBF(Search search) {
+        Building start = search.start;
+        boolean onGenerate = search.onGenerate;
+        Layout layout = start.getLayout();
+        long maxPossibleStates = start.countMaxPossibleStates();
+        final LongLongHashMap parents = search.parents;
+        final LongHashSet visited = search.visited;
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        LongArrayList level = search.level, next = new LongArrayList(EXPECTED_QUEUE_SIZE);
+        if (onGenerate && start.isWin()) {
+            return Collections.singletonList(start);
+        }
+        Progress progress = new Progress(() -> onGenerate ? parents.size() : visited.size());
+        long lastCheckpoint = System.currentTimeMillis();
+        for (int depth = search.depth; !level.isEmpty(); depth++) {
+            if (checkpointFile != null && System.currentTimeMillis() - lastCheckpoint >= checkpointIntervalMillis) {
+                search.level = level;
+                search.depth = depth;
+                try {
+                    search.write(checkpointFile);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                lastCheckpoint = System.currentTimeMillis();
             }
-            if (current.level + 1 <= maxMoves) {
-                current.label.computeReachable(isUnvisited)
-                        .forEach(b -> {
-                            queue.add(new Node(b, current));
-                        });
+            progress.flush();
+            listener.depthReached(depth, level.size(), onGenerate ? parents.size() : visited.size());
+            for (int j = 0; j < level.size(); j++) {
+                int numVisited = onGenerate ? parents.size() : visited.size();
+                if (numVisited > maxPossibleStates) {
+                    throw new IllegalStateException(String.format("%d states have been examined but max possible is %d", numVisited, maxPossibleStates));
+                }
+                long current = level.get(j);
+                if (!onGenerate) {
+                    visited.add(layout.canonicalize(current));
+                    if (layout.isWin(current)) {
+                        progress.flush();
+                        recordVisitedBytes(parents, visited);
+                        return tracePath(layout, start, current, parents);
+                    }
+                }
+                if (depth + 1 > maxMoves) {
+                    continue;
+                }
+                numExpanded++;
+                int count = layout.distinctSuccessors(current, successors, canonicals, pruner);
+                int duplicates = 0;
+                for (int i = 0; i < count; i++) {
+                    long canonical = canonicals[i];
+                    if (onGenerate) {
+                        if (!parents.putIfAbsent(canonical, current)) {
+                            duplicates++;
+                            continue;
+                        }
+                        if (layout.isWin(successors[i])) {
+                            progress.expanded(count, duplicates);
+                            progress.flush();
+                            recordVisitedBytes(parents, visited);
+                            return tracePath(layout, start, successors[i], parents);
+                        }
+                    } else {
+                        if (visited.contains(canonical)) {
+                            duplicates++;
+                            continue;
+                        }
+                        parents.putIfAbsent(canonical, current);
+                    }
+                    next.add(successors[i]);
+                }
+                progress.expanded(count, duplicates);
+                peakQueueSize = Math.max(peakQueueSize, level.size() - j - 1 + next.size());
             }
+            LongArrayList expanded = level;
+            level = next;
+            next = expanded;
+            next.clear();
         }
+        progress.flush();
+        recordVisitedBytes(parents, visited);
         return null;
     }
-    private static final int MAX_DEGREE = 16;
-    private int currentDepth = -1;
 
-    protected int reachedDepth(int depth, int queueSize) {
-        if (currentDepth != depth) {
-            depthChanged(depth, queueSize);
+    private void recordVisitedBytes(LongLongHashMap parents, @Nullable LongHashSet visited) {
+        lastVisitedBytes = (long) parents.capacity() * 2 * Long.BYTES + (visited == null ? 0 : (long) visited.capacity() * Long.BYTES);
+    }
+
+    /**
+     * Runs the search with a Bloom filter as the visited set, marking states
+     * as they are generated. Only the filter and the next level are held on
+     * the heap. Each finished level is sorted and written to a file, the
+     * level being expanded is read back from its file, and the path is
+     * traced back through the files as in {@link ExternalBreadthFirstAgent}.
+     */
+    private @Nullable List<Building> playApproximate(Building start, LongBloomFilter visited) {
+        if (start.isWin()) {
+            return Collections.singletonList(start);
+        }
+        List<SortedLongFile> levels = new ArrayList<>();
+        Path directory = null;
+        lastVisitedBytes = visited.sizeInBytes();
+        try {
+            directory = Files.createTempDirectory(checkNotNull(bloomWorkDirectory), "bfs");
+            return searchApproximate(start, visited, directory, levels);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            SortedLongFile.deleteAll(directory, levels);
+        }
+    }
+
+    private @Nullable List<Building> searchApproximate(Building start, LongBloomFilter visited, Path directory,
+                                                       List<SortedLongFile> levels) throws IOException {
+        Layout layout = start.getLayout();
+        visited.add(start.canonical);
+        LongArrayList next = new LongArrayList();
+        next.add(start.canonical);
+        levels.add(writeLevel(directory, 0, next));
+        next.clear();
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        Progress progress = new Progress(visited::size);
+        for (int depth = 0; depth < maxMoves; depth++) {
+            SortedLongFile level = levels.get(depth);
+            progress.flush();
+            listener.depthReached(depth, level.size(), visited.size());
+            for (long j = 0; j < level.size(); j++) {
+                numExpanded++;
+                int count = layout.distinctSuccessors(level.get(j), successors, canonicals, pruner);
+                int duplicates = 0;
+                for (int i = 0; i < count; i++) {
+                    if (!visited.add(canonicals[i])) {
+                        duplicates++;
+                        continue;
+                    }
+                    if (layout.isWin(canonicals[i])) {
+                        progress.expanded(count, duplicates);
+                        progress.flush();
+                        List<Building> path = traceLevels(layout, start, levels.size(), d -> levels.get(d)::contains, canonicals[i]);
+                        checkReplays(path);
+                        return path;
+                    }
+                    next.add(canonicals[i]);
+                }
+                progress.expanded(count, duplicates);
+            }
+            if (next.isEmpty()) {
+                break;
+            }
+            next.sort();
+            lastVisitedBytes = Math.max(lastVisitedBytes, visited.sizeInBytes() + (long) next.capacity() * Long.BYTES);
+            levels.add(writeLevel(directory, depth + 1, next));
+            peakQueueSize = Math.max(peakQueueSize, next.size());
+            next.clear();
         }
-        currentDepth = depth;
-        return depth;
+        progress.flush();
+        return null;
     }
 
-    protected void depthChanged(int newDepth, int queueSize) {
-        if (isVerbose()) {
-            System.out.format("depth changed %d; queue size = %d%n", newDepth, queueSize);
+    private static SortedLongFile writeLevel(Path directory, int depth, LongArrayList sorted) throws IOException {
+        Path file = directory.resolve(String.format("level-%04d", depth));
+        try (SortedLongFile.Writer writer = new SortedLongFile.Writer(file)) {
+            for (int i = 0; i < sorted.size(); i++) {
+                writer.add(sorted.get(i));
+            }
         }
+        return SortedLongFile.open(file);
     }
 
+    private static final int MAX_DEGREE = 16;
+
     public static void main(String[] args) {
         Building building = Buildings.createPartTwoPuzzleInputBuilding();
         Agent agent = new BreadthFirstAgent(64).toggleVerbose();
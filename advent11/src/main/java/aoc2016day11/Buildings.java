@@ -4,7 +4,6 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("ArraysAsListWithZeroOrOneArgument")
 public class Buildings {
@@ -21,15 +20,22 @@ public class Buildings {
     public static class Builder {
         private final int numFloors;
         private final List<int[]> elements = new ArrayList<>();
+        private int capacity = Layout.DEFAULT_CAPACITY;
 
         private Builder(int numFloors) {
             this.numFloors = numFloors;
         }
 
         public Building finish(int elevator) {
-            Building.ElementCache cache = new Building.ElementCache(numFloors);
-            Element[] elementsList = elements.stream().map(p -> new Element(p[0], p[1])).collect(Collectors.toList()).toArray(new Element[0]);
-            return new Building(numFloors, elevator, elementsList, cache);
+            Layout layout = new Layout(numFloors, elements.size(), capacity);
+            int[] microchips = elements.stream().mapToInt(p -> p[0]).toArray();
+            int[] generators = elements.stream().mapToInt(p -> p[1]).toArray();
+            return new Building(layout, layout.encode(elevator, microchips, generators));
+        }
+
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
         }
 
         public Builder add(int microchip, int generator) {
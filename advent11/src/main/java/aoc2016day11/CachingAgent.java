@@ -0,0 +1,80 @@
+package aoc2016day11;
+
+import javax.annotation.Nullable;
+import javax.management.MBeanServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Agent that answers from a {@link SolutionCache} when it can and asks
+ * another agent otherwise, caching what that agent finds. The other agent
+ * should find optimal paths, such as {@link BreadthFirstAgent} or
+ * {@link AStarAgent}; a cached path longer than the move limit is taken
+ * to mean that there is no path within it.
+ */
+public class CachingAgent extends Agent {
+
+    private final Agent delegate;
+    private final SolutionCache cache;
+    private long hits, misses;
+
+    public CachingAgent(Agent delegate, SolutionCache cache) {
+        super(delegate.maxMoves);
+        this.delegate = checkNotNull(delegate);
+        this.cache = checkNotNull(cache);
+    }
+
+    /**
+     * Also sets the delegate's server, so that the searches it runs on a
+     * miss are registered too.
+     */
+    @Override
+    public CachingAgent monitorWith(@Nullable MBeanServer server) {
+        super.monitorWith(server);
+        delegate.monitorWith(server);
+        return this;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        try {
+            Optional<List<Building>> cached = cache.get(start);
+            if (cached.isPresent()) {
+                hits++;
+                return Buildings.countMoves(cached.get()) <= maxMoves ? cached : Optional.empty();
+            }
+            misses++;
+            Optional<List<Building>> strategy = delegate.play(start);
+            if (strategy.isPresent()) {
+                cache.put(strategy.get());
+            }
+            return strategy;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Usage: {@code CachingAgent [CACHE_FILE]}
+     */
+    public static void main(String[] args) throws IOException {
+        try (SolutionCache cache = args.length > 0 ? SolutionCache.open(Paths.get(args[0]), 1024) : new SolutionCache(1024)) {
+            CachingAgent agent = new CachingAgent(new AStarAgent(64), cache);
+            attempt(agent, Buildings.createPartTwoPuzzleInputBuilding());
+            System.out.format("%d hits, %d misses%n", agent.getHits(), agent.getMisses());
+        }
+    }
+}
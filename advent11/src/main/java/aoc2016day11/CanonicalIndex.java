@@ -0,0 +1,45 @@
+package aoc2016day11;
+
+import com.google.common.math.LongMath;
+
+/**
+ * Perfect ranking of canonical states. A canonical state is an elevator
+ * floor plus a sorted multiset of element codes, where an element's code is
+ * {@code microchip * numFloors + generator}. Adding {@code i} to the
+ * {@code i}th smallest code turns the multiset into a strictly increasing
+ * sequence, which the combinatorial number system ranks densely.
+ */
+final class CanonicalIndex {
+
+    private final Layout layout;
+    private final long[][] binomial;
+    private final long numMultisets;
+    public final long size;
+
+    public CanonicalIndex(Layout layout) {
+        this.layout = layout;
+        int numCodes = layout.numFloors * layout.numFloors, n = layout.numElements;
+        binomial = new long[numCodes + n][n + 1];
+        for (int d = 0; d < binomial.length; d++) {
+            binomial[d][0] = 1;
+            for (int k = 1; k <= Math.min(d, n); k++) {
+                binomial[d][k] = LongMath.checkedAdd(binomial[d - 1][k - 1], binomial[d - 1][k]);
+            }
+        }
+        numMultisets = binomial[numCodes + n - 1][n];
+        size = LongMath.checkedMultiply(numMultisets, layout.numFloors);
+    }
+
+    /**
+     * @param canonical a canonical state
+     * @return the index of the state, from zero to {@link #size} exclusive
+     */
+    public long rank(long canonical) {
+        long rank = 0;
+        for (int i = 0; i < layout.numElements; i++) {
+            int code = layout.microchip(canonical, i) * layout.numFloors + layout.generator(canonical, i);
+            rank += binomial[code + i][i + 1];
+        }
+        return layout.elevator(canonical) * numMultisets + rank;
+    }
+}
@@ -0,0 +1,86 @@
+package aoc2016day11;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Map from primitive long to primitive long that may be used by several
+ * threads at once. Entries are spread over a fixed number of
+ * {@link LongLongHashMap} shards by the high bits of the mixed key, and
+ * each shard is guarded by its own lock, so threads contend only when they
+ * touch the same shard and no entry is boxed.
+ */
+public class ConcurrentLongLongHashMap {
+
+    public static final int DEFAULT_NUM_SHARDS = 64;
+
+    private final LongLongHashMap[] shards;
+    private final int shift;
+
+    public ConcurrentLongLongHashMap() {
+        this(DEFAULT_NUM_SHARDS, 16);
+    }
+
+    /**
+     * @param numShards number of shards; a power of two
+     * @param expectedSize how many entries the whole map is expected to hold
+     */
+    public ConcurrentLongLongHashMap(int numShards, int expectedSize) {
+        checkArgument(numShards > 1 && Integer.bitCount(numShards) == 1, "numShards must be a power of 2 greater than 1: %s", numShards);
+        checkArgument(expectedSize >= 0, "expectedSize %s", expectedSize);
+        shards = new LongLongHashMap[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new LongLongHashMap(expectedSize / numShards);
+        }
+        shift = Long.SIZE - Integer.numberOfTrailingZeros(numShards);
+    }
+
+    /**
+     * The shard is picked by the high bits of the mix, while each shard
+     * probes from the low bits, so keys in one shard still spread over
+     * its table.
+     */
+    private LongLongHashMap shard(long key) {
+        return shards[(int) (LongHashSet.mix(key) >>> shift)];
+    }
+
+    /**
+     * Associates a value with a key unless the key is already present.
+     * @return true if the entry was added
+     */
+    public boolean putIfAbsent(long key, long value) {
+        LongLongHashMap shard = shard(key);
+        synchronized (shard) {
+            return shard.putIfAbsent(key, value);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is absent
+     */
+    public long get(long key) {
+        LongLongHashMap shard = shard(key);
+        synchronized (shard) {
+            return shard.get(key);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        LongLongHashMap shard = shard(key);
+        synchronized (shard) {
+            return shard.containsKey(key);
+        }
+    }
+
+    /**
+     * @return the number of entries; not a snapshot if other threads are adding
+     */
+    public long size() {
+        long size = 0;
+        for (LongLongHashMap shard : shards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+}
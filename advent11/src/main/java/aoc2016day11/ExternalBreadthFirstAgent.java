@@ -0,0 +1,258 @@
+package aoc2016day11;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Breadth-first search that keeps its levels on disk instead of in a hash
+ * set, so that the instances it can answer are bounded by disk rather than
+ * heap. Each level is a file of sorted, distinct canonical states. The
+ * successors of a level are collected in a bounded buffer that is sorted
+ * and spilled to a run file whenever it fills; the runs are then merged
+ * into the next level, dropping every state that is in the current or the
+ * previous level. Moves are reversible, so those are the only levels where
+ * a successor can have been seen before (delayed duplicate detection).
+ * The duplicates are only known once the level is merged, so the states
+ * of a level are reported to the {@link SearchListener} as expanded then.
+ *
+ * <p>Only parents are not stored. The path is rebuilt backward from the
+ * win by searching each earlier level for a neighbor of the state found so
+ * far. A {@link #usePruner(MovePruner) pruner} makes the moves one-way, in
+ * which case a state may be found again more than two levels later; the
+ * search still ends, but some states are expanded more than once.
+ */
+public class ExternalBreadthFirstAgent extends Agent {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 22;
+
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+
+    private final Path workDirectory;
+    private final int bufferSize;
+    private long numExpanded, numVisited;
+
+    /**
+     * @param maxMoves max moves
+     * @param workDirectory directory in which a temporary directory for level files is created
+     */
+    public ExternalBreadthFirstAgent(int maxMoves, Path workDirectory) {
+        this(maxMoves, workDirectory, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param maxMoves max moves
+     * @param workDirectory directory in which a temporary directory for level files is created
+     * @param bufferSize number of successors held in memory before they are spilled to a run
+     */
+    public ExternalBreadthFirstAgent(int maxMoves, Path workDirectory, int bufferSize) {
+        super(maxMoves);
+        this.workDirectory = checkNotNull(workDirectory);
+        checkArgument(bufferSize > 0, "bufferSize %s", bufferSize);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return number of states whose successors were generated during the last play
+     */
+    public long getNumExpanded() {
+        return numExpanded;
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        numExpanded = 0;
+        if (start.isWin()) {
+            return Optional.of(Collections.singletonList(start));
+        }
+        List<SortedLongFile> levels = new ArrayList<>();
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory(workDirectory, "bfs");
+            return Optional.ofNullable(search(start, directory, levels));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            SortedLongFile.deleteAll(directory, levels);
+        }
+    }
+
+    private List<Building> search(Building start, Path directory, List<SortedLongFile> levels) throws IOException {
+        Layout layout = start.getLayout();
+        Path first = directory.resolve(levelName(0));
+        try (SortedLongFile.Writer writer = new SortedLongFile.Writer(first)) {
+            writer.add(start.canonical);
+        }
+        levels.add(SortedLongFile.open(first));
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        long[] buffer = new long[bufferSize];
+        numVisited = 1;
+        Progress progress = new Progress(() -> numVisited);
+        for (int depth = 0; depth < maxMoves; depth++) {
+            SortedLongFile current = levels.get(depth);
+            listener.depthReached(depth, current.size(), numVisited);
+            List<Path> runs = new ArrayList<>();
+            int buffered = 0;
+            long numGenerated = 0;
+            for (long j = 0; j < current.size(); j++) {
+                numExpanded++;
+                int count = layout.distinctSuccessors(current.get(j), successors, canonicals, pruner);
+                numGenerated += count;
+                for (int i = 0; i < count; i++) {
+                    if (layout.isWin(canonicals[i])) {
+                        progress.expanded(j + 1, numGenerated, 0);
+                        progress.flush();
+                        return traceLevels(layout, start, levels.size(), d -> levels.get(d)::contains, canonicals[i]);
+                    }
+                    if (buffered == buffer.length) {
+                        runs.add(spill(buffer, buffered, directory.resolve(runName(depth + 1, runs.size()))));
+                        buffered = 0;
+                    }
+                    buffer[buffered++] = canonicals[i];
+                }
+                if ((j + 1) % CANCEL_CHECK_INTERVAL == 0) {
+                    checkCancelled();
+                }
+            }
+            if (buffered > 0) {
+                runs.add(spill(buffer, buffered, directory.resolve(runName(depth + 1, runs.size()))));
+            }
+            SortedLongFile previous = depth > 0 ? levels.get(depth - 1) : null;
+            SortedLongFile next = merge(runs, previous, current, directory.resolve(levelName(depth + 1)));
+            levels.add(next);
+            numVisited += next.size();
+            progress.expanded(current.size(), numGenerated, numGenerated - next.size());
+            progress.flush();
+            if (next.size() == 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static String levelName(int depth) {
+        return String.format("level-%04d", depth);
+    }
+
+    private static String runName(int depth, int run) {
+        return String.format("level-%04d-run-%04d", depth, run);
+    }
+
+    /**
+     * Sorts buffered states and writes each distinct one to a run file.
+     */
+    private static Path spill(long[] buffer, int length, Path file) throws IOException {
+        Arrays.sort(buffer, 0, length);
+        try (SortedLongFile.Writer writer = new SortedLongFile.Writer(file)) {
+            for (int i = 0; i < length; i++) {
+                if (i == 0 || buffer[i] != buffer[i - 1]) {
+                    writer.add(buffer[i]);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Cursor over a sorted file, used both to merge runs and to step through
+     * the levels being subtracted from the merge.
+     */
+    private static final class Cursor {
+        private final SortedLongFile file;
+        private long index;
+
+        Cursor(SortedLongFile file) {
+            this.file = file;
+        }
+
+        boolean hasValue() {
+            return file != null && index < file.size();
+        }
+
+        long value() {
+            return file.get(index);
+        }
+
+        boolean advance() {
+            index++;
+            return hasValue();
+        }
+
+        /**
+         * Advances past values less than the given one.
+         * @return true if the file holds the value
+         */
+        boolean skipTo(long value) {
+            while (hasValue() && value() < value) {
+                index++;
+            }
+            return hasValue() && value() == value;
+        }
+    }
+
+    /**
+     * Merges sorted runs into a new level, dropping repeats and states in
+     * the previous or current level, then deletes the runs.
+     */
+    private static SortedLongFile merge(List<Path> runs, SortedLongFile previous, SortedLongFile current, Path file) throws IOException {
+        List<SortedLongFile> opened = new ArrayList<>(runs.size());
+        try (SortedLongFile.Writer writer = new SortedLongFile.Writer(file)) {
+            PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, runs.size()), Comparator.comparingLong(Cursor::value));
+            for (Path run : runs) {
+                SortedLongFile f = SortedLongFile.open(run);
+                opened.add(f);
+                Cursor cursor = new Cursor(f);
+                if (cursor.hasValue()) {
+                    queue.add(cursor);
+                }
+            }
+            Cursor older = new Cursor(previous), old = new Cursor(current);
+            boolean written = false;
+            long last = 0;
+            while (!queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                long value = cursor.value();
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+                if (written && value == last) {
+                    continue;
+                }
+                boolean seen = older.skipTo(value);
+                seen = old.skipTo(value) || seen;
+                if (!seen) {
+                    writer.add(value);
+                    written = true;
+                    last = value;
+                }
+            }
+        } finally {
+            for (SortedLongFile f : opened) {
+                f.close();
+            }
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+        return SortedLongFile.open(file);
+    }
+
+    public static void main(String[] args) {
+        Path workDirectory = Paths.get(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+        Building building = Buildings.createPartTwoPuzzleInputBuilding();
+        Agent agent = new ExternalBreadthFirstAgent(64, workDirectory).toggleVerbose();
+        attempt(agent, building);
+    }
+}
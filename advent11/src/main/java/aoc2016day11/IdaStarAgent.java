@@ -0,0 +1,202 @@
+package aoc2016day11;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Iterative-deepening A* agent. Each iteration is a depth-first search
+ * that cuts off any state whose moves so far plus
+ * {@link Layout#lowerBound(long) lower bound} exceed the current bound;
+ * the next bound is the smallest estimate that was cut off. Cycles are
+ * detected only along the current path. Memory is proportional to the
+ * depth, plus an optional fixed-size transposition table that remembers
+ * the fewest moves with which a state was reached in the current
+ * iteration, so that states reached again with no fewer moves are skipped.
+ */
+public class IdaStarAgent extends Agent {
+
+    private static final int FOUND = -1;
+    private static final int NOT_FOUND = Integer.MAX_VALUE;
+
+    private final int transpositionTableSize;
+    private long numExpanded;
+
+    public IdaStarAgent(int maxMoves) {
+        this(maxMoves, 0);
+    }
+
+    /**
+     * @param maxMoves max moves
+     * @param transpositionTableSize number of transposition table slots; must
+     * be zero, for no table, or a power of two
+     */
+    public IdaStarAgent(int maxMoves, int transpositionTableSize) {
+        super(maxMoves);
+        checkArgument(transpositionTableSize == 0 || Integer.bitCount(transpositionTableSize) == 1, "transpositionTableSize must be 0 or a power of 2: %s", transpositionTableSize);
+        this.transpositionTableSize = transpositionTableSize;
+    }
+
+    /**
+     * @return number of states expanded during the last play, over all iterations
+     */
+    public long getNumExpanded() {
+        return numExpanded;
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        numExpanded = 0;
+        Search search = new Search(start.getLayout(), maxMoves, transpositionTableSize);
+        search.path[0] = start.state;
+        search.pathCanonicals[0] = start.canonical;
+        int bound = start.getLayout().lowerBound(start.state);
+        while (bound <= maxMoves) {
+            search.clearTranspositions();
+            listener.depthReached(bound, 0, 0);
+            int next = search.search(0, bound);
+            search.progress.flush();
+            if (next == FOUND) {
+                List<Building> path = new ArrayList<>(search.pathLength);
+                for (int i = 0; i < search.pathLength; i++) {
+                    path.add(new Building(start.getLayout(), search.path[i], search.pathCanonicals[i]));
+                }
+                return Optional.of(path);
+            }
+            if (next == NOT_FOUND) {
+                break;
+            }
+            bound = next;
+        }
+        return Optional.empty();
+    }
+
+    private class Search {
+
+        private final Layout layout;
+        private final long[] path, pathCanonicals;
+        private int pathLength;
+        private final long[][] successors, canonicals;
+        private final int[][] estimates;
+        private final long[] transpositionKeys;
+        private final int[] transpositionMoves;
+        private int numTranspositions;
+        private final Progress progress = new Progress(() -> numTranspositions);
+
+        public Search(Layout layout, int maxMoves, int transpositionTableSize) {
+            this.layout = layout;
+            path = new long[maxMoves + 1];
+            pathCanonicals = new long[maxMoves + 1];
+            successors = new long[maxMoves][layout.maxSuccessors()];
+            canonicals = new long[maxMoves][layout.maxSuccessors()];
+            estimates = new int[maxMoves][layout.maxSuccessors()];
+            transpositionKeys = new long[transpositionTableSize];
+            transpositionMoves = new int[transpositionTableSize];
+        }
+
+        public void clearTranspositions() {
+            Arrays.fill(transpositionMoves, 0);
+            numTranspositions = 0;
+        }
+
+        /**
+         * @return {@link #FOUND}, or the smallest estimate that exceeded the
+         * bound, or {@link #NOT_FOUND} if nothing did
+         */
+        public int search(int moves, int bound) {
+            long state = path[moves];
+            int estimate = moves + layout.lowerBound(state);
+            if (estimate > bound) {
+                return estimate;
+            }
+            if (layout.isWin(state)) {
+                pathLength = moves + 1;
+                return FOUND;
+            }
+            if (moves == maxMoves) {
+                return NOT_FOUND;
+            }
+            numExpanded++;
+            long[] next = successors[moves], nextCanonicals = canonicals[moves];
+            int[] nextEstimates = estimates[moves];
+            int count = sortedSuccessors(state, next, nextCanonicals, nextEstimates);
+            int min = NOT_FOUND, duplicates = 0;
+            for (int i = 0; i < count; i++) {
+                if (isOnPath(nextCanonicals[i], moves) || !recordTransposition(nextCanonicals[i], moves + 1)) {
+                    duplicates++;
+                    continue;
+                }
+                path[moves + 1] = next[i];
+                pathCanonicals[moves + 1] = nextCanonicals[i];
+                int result = search(moves + 1, bound);
+                if (result == FOUND) {
+                    progress.expanded(count, duplicates);
+                    return FOUND;
+                }
+                min = Math.min(min, result);
+            }
+            progress.expanded(count, duplicates);
+            return min;
+        }
+
+        /**
+         * Generates distinct successors ordered by lower bound, so that the
+         * most promising moves are tried first.
+         */
+        private int sortedSuccessors(long state, long[] next, long[] nextCanonicals, int[] nextEstimates) {
+            int count = layout.distinctSuccessors(state, next, nextCanonicals, pruner);
+            for (int i = 0; i < count; i++) {
+                long s = next[i], c = nextCanonicals[i];
+                int e = layout.lowerBound(s);
+                int j = i - 1;
+                while (j >= 0 && nextEstimates[j] > e) {
+                    next[j + 1] = next[j];
+                    nextCanonicals[j + 1] = nextCanonicals[j];
+                    nextEstimates[j + 1] = nextEstimates[j];
+                    j--;
+                }
+                next[j + 1] = s;
+                nextCanonicals[j + 1] = c;
+                nextEstimates[j + 1] = e;
+            }
+            return count;
+        }
+
+        private boolean isOnPath(long canonical, int moves) {
+            for (int i = moves; i >= 0; i--) {
+                if (pathCanonicals[i] == canonical) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return false if the state was already reached with no more moves in this iteration
+         */
+        private boolean recordTransposition(long canonical, int moves) {
+            if (transpositionKeys.length == 0) {
+                return true;
+            }
+            int slot = (int) LongHashSet.mix(canonical) & (transpositionKeys.length - 1);
+            if (transpositionMoves[slot] != 0 && transpositionKeys[slot] == canonical && transpositionMoves[slot] <= moves + 1) {
+                return false;
+            }
+            if (transpositionMoves[slot] == 0) {
+                numTranspositions++;
+            }
+            transpositionKeys[slot] = canonical;
+            transpositionMoves[slot] = moves + 1;
+            return true;
+        }
+    }
+
+    public static void main(String[] args) {
+        Building building = Buildings.createPartTwoPuzzleInputBuilding();
+        Agent agent = new IdaStarAgent(64, 1 << 16).toggleVerbose();
+        attempt(agent, building);
+    }
+}
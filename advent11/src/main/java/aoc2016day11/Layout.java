@@ -0,0 +1,585 @@
+package aoc2016day11;
+
+import com.google.common.math.IntMath;
+import com.google.common.math.LongMath;
+
+import java.math.RoundingMode;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bit layout of a building state packed into a single {@code long}. The
+ * lowest field holds the elevator floor; it is followed by a generator field
+ * and a microchip field for each element. Every field is just wide enough to
+ * hold a floor index, so four floors take two bits per field.
+ *
+ * <p>Items are numbered so that item {@code 2 * i} is the generator of
+ * element {@code i} and item {@code 2 * i + 1} is its microchip. Moving an
+ * item one floor is then a single addition or subtraction on the state.
+ *
+ * <p>The elevator carries up to {@link #capacity} items; the puzzle's
+ * elevator carries two.
+ */
+public final class Layout {
+
+    public static final int NO_ITEM = -1;
+    public static final int MAX_FLOORS = Long.SIZE;
+    public static final int DEFAULT_CAPACITY = 2;
+    private static final int MAX_SUCCESSORS = 1 << 24;
+    private static final long GENERATORS = 0x5555555555555555L;
+    private static final long MICROCHIPS = GENERATORS << 1;
+
+    public final int numFloors;
+    public final int numElements;
+    public final int capacity;
+    final int bits;
+    final long fieldMask;
+    private final long itemsMask;
+    private final long itemsOnTop;
+    private final int maxSuccessors;
+
+    public Layout(int numFloors, int numElements) {
+        this(numFloors, numElements, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param numFloors number of floors
+     * @param numElements number of elements
+     * @param capacity most items the elevator carries at once; an elevator
+     *                 that carries only one can never bring two items past a floor
+     */
+    public Layout(int numFloors, int numElements, int capacity) {
+        checkArgument(numFloors > 0 && numFloors <= MAX_FLOORS, "numFloors %s", numFloors);
+        checkArgument(numElements > 0, "no RTG/microchip pairs in building");
+        checkArgument(capacity >= 1, "capacity %s", capacity);
+        this.numFloors = numFloors;
+        this.numElements = numElements;
+        this.capacity = capacity;
+        this.bits = bitsFor(numFloors);
+        checkArgument(bits * (1 + 2 * numElements) <= Long.SIZE, "%s elements on %s floors do not fit in a long", numElements, numFloors);
+        this.fieldMask = (1L << bits) - 1;
+        long mask = 0, top = 0;
+        for (int item = 0; item < numItems(); item++) {
+            mask |= fieldMask << shift(item);
+            top |= ((long) (numFloors - 1)) << shift(item);
+        }
+        this.itemsMask = mask;
+        this.itemsOnTop = top;
+        long loads = 0;
+        for (int size = 1; size <= Math.min(capacity, numItems()); size++) {
+            loads = LongMath.saturatedAdd(loads, LongMath.binomial(numItems(), size));
+        }
+        checkArgument(loads <= MAX_SUCCESSORS / 2, "%s loads of up to %s items out of %s is too many to enumerate", loads, capacity, numItems());
+        this.maxSuccessors = (int) (2 * loads);
+    }
+
+    static int bitsFor(int numValues) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(numValues - 1));
+    }
+
+    public int numItems() {
+        return numElements * 2;
+    }
+
+    public static int item(int elementIndex, Kind kind) {
+        return elementIndex * 2 + (kind == Kind.G ? 0 : 1);
+    }
+
+    public static int elementOf(int item) {
+        return item >> 1;
+    }
+
+    public static Kind kindOf(int item) {
+        return (item & 1) == 0 ? Kind.G : Kind.M;
+    }
+
+    private int shift(int item) {
+        return (1 + item) * bits;
+    }
+
+    long unit(int item) {
+        return 1L << shift(item);
+    }
+
+    public int elevator(long state) {
+        return (int) (state & fieldMask);
+    }
+
+    public int floor(long state, int item) {
+        return (int) ((state >>> shift(item)) & fieldMask);
+    }
+
+    public int generator(long state, int elementIndex) {
+        return floor(state, elementIndex * 2);
+    }
+
+    public int microchip(long state, int elementIndex) {
+        return floor(state, elementIndex * 2 + 1);
+    }
+
+    public long encode(int elevator, int[] microchips, int[] generators) {
+        checkArgument(microchips.length == numElements && generators.length == numElements, "expected %s elements", numElements);
+        checkArgument(isInside(elevator), "elevator=%s, numFloors=%s", elevator, numFloors);
+        long state = elevator;
+        for (int i = 0; i < numElements; i++) {
+            checkArgument(isInside(microchips[i]) && isInside(generators[i]), "some things are outside the building");
+            state |= ((long) generators[i]) << shift(i * 2);
+            state |= ((long) microchips[i]) << shift(i * 2 + 1);
+        }
+        return state;
+    }
+
+    public boolean isInside(int floor) {
+        return floor >= 0 && floor < numFloors;
+    }
+
+    /**
+     * Checks that every field of the state holds a floor inside the building.
+     * Only relevant when the floor count is not a power of two.
+     * @param state the state
+     * @return true if the state is well-formed
+     */
+    public boolean isInside(long state) {
+        if (!isInside(elevator(state))) {
+            return false;
+        }
+        for (int item = 0; item < numItems(); item++) {
+            if (!isInside(floor(state, item))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Applies a move of the elevator and one or two items.
+     * The caller is responsible for keeping the elevator inside the building
+     * and for choosing items that are on the elevator floor.
+     * @param state the current state
+     * @param offset +1 for up, -1 for down
+     * @param item1 the first item
+     * @param item2 the second item, or {@link #NO_ITEM}
+     * @return the new state
+     */
+    public long move(long state, int offset, int item1, int item2) {
+        long delta = 1L + unit(item1);
+        if (item2 != NO_ITEM) {
+            delta += unit(item2);
+        }
+        return offset > 0 ? state + delta : state - delta;
+    }
+
+    /**
+     * Applies a move of the elevator and any number of items.
+     * @param state the current state
+     * @param offset +1 for up, -1 for down
+     * @param items bit mask of the items, with bit {@code i} for item {@code i}
+     * @return the new state
+     */
+    public long move(long state, int offset, long items) {
+        long delta = 1L;
+        for (long rest = items; rest != 0; rest &= rest - 1) {
+            delta += unit(Long.numberOfTrailingZeros(rest));
+        }
+        return offset > 0 ? state + delta : state - delta;
+    }
+
+    /**
+     * @param state the state
+     * @param floor the floor
+     * @return a bit mask of the items on the floor, with bit {@code i} for item {@code i}
+     */
+    public long itemsOn(long state, int floor) {
+        long items = 0;
+        long s = state;
+        for (int item = 0; item < numItems(); item++) {
+            s >>>= bits;
+            if ((s & fieldMask) == floor) {
+                items |= 1L << item;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Checks whether a set of items may be together, on a floor or in the
+     * elevator: either there is no generator, or every microchip has its
+     * own generator with it. So two items of the same kind may ride the
+     * elevator together, and so may a generator and its own microchip.
+     * @param items bit mask of the items, with bit {@code i} for item {@code i}
+     * @return true if no microchip gets fried
+     */
+    static boolean isSafeTogether(long items) {
+        long generators = items & GENERATORS;
+        return generators == 0 || (items & MICROCHIPS & ~(generators << 1)) == 0;
+    }
+
+    /**
+     * @return the size of buffer that {@link #successors(long, long[])} may need
+     */
+    public int maxSuccessors() {
+        return maxSuccessors;
+    }
+
+    /**
+     * Writes the safe states one move away into a buffer. Nothing is
+     * allocated, so this is the method to use in the inner loop of a search.
+     * Successors are in the order of {@link Building#findValidMoves()}, up
+     * before down, but states that differ only by a swap of elements are not
+     * filtered out.
+     * @param state the state
+     * @param buffer destination; must have room for {@link #maxSuccessors()} states
+     * @return the number of successors written
+     */
+    public int successors(long state, long[] buffer) {
+        return successors(state, buffer, MovePruner.NONE);
+    }
+
+    /**
+     * Writes the safe states one move away that a pruner keeps into a buffer.
+     * @param state the state
+     * @param buffer destination; must have room for {@link #maxSuccessors()} states
+     * @param pruner the pruner
+     * @return the number of successors written
+     */
+    public int successors(long state, long[] buffer, MovePruner pruner) {
+        int elevator = elevator(state);
+        long onFloor = itemsOn(state, elevator);
+        long unsafeFloors = unsafeFloors(state);
+        int count = 0;
+        if (elevator + 1 < numFloors) {
+            count = successors(state, onFloor, unsafeFloors, 1, buffer, count, pruner);
+        }
+        if (elevator > 0) {
+            count = successors(state, onFloor, unsafeFloors, -1, buffer, count, pruner);
+        }
+        return count;
+    }
+
+    /**
+     * Generates the moves in one direction. Only the elevator floor and the
+     * floor it moves to change, so if any other floor is already unsafe,
+     * every move is too; otherwise each load is checked against the items
+     * on those two floors with a few mask operations.
+     */
+    private int successors(long state, long onFloor, long unsafeFloors, int offset, long[] buffer, int count, MovePruner pruner) {
+        int from = elevator(state), to = from + offset;
+        if ((unsafeFloors & ~((1L << from) | (1L << to))) != 0 || pruner.skipDirection(this, state, offset)) {
+            return count;
+        }
+        int end = loads(state, offset, onFloor, itemsOn(state, to), 0L, 1L, onFloor, capacity, buffer, count);
+        return pruner.prune(this, state, offset, buffer, count, end);
+    }
+
+    /**
+     * @param state a state
+     * @param next a state one move away
+     * @return a bit mask of the items the move carries
+     */
+    public long movedItems(long state, long next) {
+        long items = 0;
+        for (long changed = (state ^ next) & ~fieldMask; changed != 0; ) {
+            int item = Long.numberOfTrailingZeros(changed) / bits - 1;
+            items |= 1L << item;
+            changed &= ~(fieldMask << shift(item));
+        }
+        return items;
+    }
+
+    /**
+     * @param state the state
+     * @param floor the floor
+     * @return true if no item is on a floor below the given one
+     */
+    public boolean isEmptyBelow(long state, int floor) {
+        long s = state;
+        for (int item = 0; item < numItems(); item++) {
+            s >>>= bits;
+            if ((s & fieldMask) < floor) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extends a load with each candidate item in turn, depth first, so that
+     * each load is followed by its extensions with higher-numbered items.
+     * A load with a fried microchip can be skipped along with all its
+     * extensions: the microchip's generator has a lower number, so had it
+     * been in the extension it would already be in the load.
+     * @param left items on the elevator floor before the move
+     * @param arrived items on the destination floor before the move
+     * @param load items chosen so far
+     * @param delta the difference the move makes to the state, without sign
+     * @param candidates items that may still be added
+     * @param room how many more items fit
+     */
+    private int loads(long state, int offset, long left, long arrived, long load, long delta,
+                      long candidates, int room, long[] buffer, int count) {
+        for (long rest = candidates; rest != 0; rest &= rest - 1) {
+            int item = Long.numberOfTrailingZeros(rest);
+            long nextLoad = load | (1L << item);
+            if (!isSafeTogether(nextLoad)) {
+                continue;
+            }
+            long nextDelta = delta + unit(item);
+            if (isSafeTogether(left & ~nextLoad) && isSafeTogether(arrived | nextLoad)) {
+                buffer[count++] = offset > 0 ? state + nextDelta : state - nextDelta;
+            }
+            if (room > 1) {
+                count = loads(state, offset, left, arrived, nextLoad, nextDelta, rest & (rest - 1), room - 1, buffer, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the safe states one move away into a buffer, dropping any that
+     * differ from an earlier one only by a swap of elements, and writes the
+     * canonical form of each into a parallel buffer.
+     * @param state the state
+     * @param buffer destination; must have room for {@link #maxSuccessors()} states
+     * @param canonicals destination for canonical forms; same size as {@code buffer}
+     * @return the number of successors written
+     */
+    public int distinctSuccessors(long state, long[] buffer, long[] canonicals) {
+        return distinctSuccessors(state, buffer, canonicals, MovePruner.NONE);
+    }
+
+    /**
+     * Like {@link #distinctSuccessors(long, long[], long[])}, keeping only
+     * the moves a pruner keeps.
+     */
+    public int distinctSuccessors(long state, long[] buffer, long[] canonicals, MovePruner pruner) {
+        int count = successors(state, buffer, pruner);
+        LongHashSet seen = count > LINEAR_SCAN_LIMIT ? new LongHashSet(count) : null;
+        long canonicalState = canonicalize(state);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            long canonical = canonicalizeSuccessor(state, canonicalState, buffer[i]);
+            if (seen != null ? seen.add(canonical) : !contains(canonicals, distinct, canonical)) {
+                buffer[distinct] = buffer[i];
+                canonicals[distinct++] = canonical;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Successor counts up to which duplicates are found by scanning; the
+     * puzzle's two-item elevator never gets near it, but bigger elevators do.
+     */
+    private static final int LINEAR_SCAN_LIMIT = 64;
+
+    private static boolean contains(long[] values, int length, long value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Passes each safe state one move away to a consumer. Allocates one
+     * buffer per call; use {@link #successors(long, long[])} with a reused
+     * buffer to avoid even that.
+     * @param state the state
+     * @param sink the consumer
+     */
+    public void forEachSuccessor(long state, LongConsumer sink) {
+        long[] buffer = new long[maxSuccessors()];
+        int count = successors(state, buffer);
+        for (int i = 0; i < count; i++) {
+            sink.accept(buffer[i]);
+        }
+    }
+
+    /**
+     * Checks whether any microchip is on a floor with a generator other than
+     * its own while its own generator is elsewhere.
+     * @param state the state
+     * @return true if no microchip gets fried
+     */
+    public boolean isSafe(long state) {
+        return unsafeFloors(state) == 0;
+    }
+
+    /**
+     * @param state the state
+     * @return a bit mask of the floors where some microchip gets fried
+     */
+    private long unsafeFloors(long state) {
+        long generatorFloors = 0, unpairedMicrochipFloors = 0;
+        long s = state >>> bits;
+        for (int i = 0; i < numElements; i++) {
+            int generator = (int) (s & fieldMask);
+            s >>>= bits;
+            int microchip = (int) (s & fieldMask);
+            s >>>= bits;
+            generatorFloors |= 1L << generator;
+            if (generator != microchip) {
+                unpairedMicrochipFloors |= 1L << microchip;
+            }
+        }
+        return generatorFloors & unpairedMicrochipFloors;
+    }
+
+    public boolean isWin(long state) {
+        return (state & itemsMask) == itemsOnTop;
+    }
+
+    /**
+     * @return the state with every item and the elevator on the top floor
+     */
+    public long winState() {
+        return itemsOnTop | (numFloors - 1);
+    }
+
+    /**
+     * Computes a lower bound on the number of moves to win. Every move
+     * crosses exactly one boundary between adjacent floors, so the bound is
+     * a sum over boundaries. Say {@code n} items are at or below a boundary
+     * and the elevator carries {@code k}. If the elevator is below too, it
+     * crosses up {@code u} times and down {@code u - 1} times, carrying at
+     * most {@code k} items up and at least one item down each time. That
+     * nets {@code n} items only if {@code u >= (n - 1) / (k - 1)}, which
+     * takes at least {@code max(1, 2u - 1)} crossings. If the elevator is
+     * above the boundary, it must come down first, and the crossings number
+     * at least {@code 2 * ceil(n / (k - 1))}. A move changes the term for
+     * one boundary by at most one, so the bound is consistent as well as
+     * admissible. With {@code k = 2} the terms are {@code max(1, 2n - 3)}
+     * and {@code 2n}. With {@code k = 1} every move carries exactly one item
+     * one floor, and the term is just {@code n}, which makes the bound the
+     * sum of the distances of the items from the top floor.
+     * @param state the state
+     * @return a lower bound on the moves to win
+     */
+    public int lowerBound(long state) {
+        int elevator = elevator(state);
+        int bound = 0;
+        for (int floor = 0; floor < numFloors - 1; floor++) {
+            int itemsBelow = 0;
+            long s = state;
+            for (int item = 0; item < numItems(); item++) {
+                s >>>= bits;
+                if ((s & fieldMask) <= floor) {
+                    itemsBelow++;
+                }
+            }
+            if (capacity == 1) {
+                bound += itemsBelow;
+            } else if (itemsBelow > 0) {
+                bound += elevator <= floor
+                        ? Math.max(1, 2 * IntMath.divide(itemsBelow - 1, capacity - 1, RoundingMode.CEILING) - 1)
+                        : 2 * IntMath.divide(itemsBelow, capacity - 1, RoundingMode.CEILING);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Counts the canonical states: an elevator floor times the multisets of
+     * {@code numElements} element codes drawn from {@code numFloors²}. Not
+     * every one of them is safe or reachable, so this is an upper bound on
+     * the number of states a search can visit.
+     * @return the count, or {@link Long#MAX_VALUE} if it does not fit in a long
+     */
+    public long countCanonicalStates() {
+        int numCodes = numFloors * numFloors;
+        return LongMath.saturatedMultiply(numFloors, LongMath.binomial(numCodes + numElements - 1, numElements));
+    }
+
+    private long pairCode(long state, int elementIndex) {
+        return pairCode(state, elementIndex, pairMask());
+    }
+
+    private long pairCode(long state, int elementIndex, long pairMask) {
+        return (state >>> shift(elementIndex * 2)) & pairMask;
+    }
+
+    private long pairMask() {
+        return (1L << (2 * bits)) - 1;
+    }
+
+    /**
+     * Sorts the elements of a state by their (microchip, generator) floors.
+     * Elements are interchangeable, so two states have the same canonical
+     * form exactly when they differ only in which element is which. The
+     * result is itself a valid state.
+     * @param state the state
+     * @return the canonical form of the state
+     */
+    public long canonicalize(long state) {
+        long pairMask = pairMask();
+        for (int i = 1; i < numElements; i++) {
+            long code = pairCode(state, i);
+            int j = i - 1;
+            while (j >= 0 && pairCode(state, j) > code) {
+                state = withPairCode(state, j + 1, pairCode(state, j), pairMask);
+                j--;
+            }
+            state = withPairCode(state, j + 1, code, pairMask);
+        }
+        return state;
+    }
+
+    /**
+     * Computes the canonical form of a successor from that of the state it
+     * follows. A move changes the pair codes of only the elements whose
+     * items it carries, so each of those is found in the sorted order,
+     * given its new code and shifted into place, which takes time linear in
+     * the number of elements instead of the quadratic insertion sort of
+     * {@link #canonicalize(long)}.
+     * @param state a state
+     * @param canonical the canonical form of {@code state}
+     * @param next a state one move away from {@code state}
+     * @return the canonical form of {@code next}
+     */
+    public long canonicalizeSuccessor(long state, long canonical, long next) {
+        long pairMask = pairMask();
+        long moved = movedItems(state, next);
+        canonical = (canonical & ~fieldMask) | (next & fieldMask);
+        for (long elements = (moved | (moved >>> 1)) & GENERATORS; elements != 0; elements &= elements - 1) {
+            int element = Long.numberOfTrailingZeros(elements) >> 1;
+            long from = pairCode(state, element, pairMask), to = pairCode(next, element, pairMask);
+            int k = 0;
+            while (pairCode(canonical, k, pairMask) != from) {
+                k++;
+            }
+            for (; k + 1 < numElements && pairCode(canonical, k + 1, pairMask) < to; k++) {
+                canonical = withPairCode(canonical, k, pairCode(canonical, k + 1, pairMask), pairMask);
+            }
+            for (; k > 0 && pairCode(canonical, k - 1, pairMask) > to; k--) {
+                canonical = withPairCode(canonical, k, pairCode(canonical, k - 1, pairMask), pairMask);
+            }
+            canonical = withPairCode(canonical, k, to, pairMask);
+        }
+        return canonical;
+    }
+
+    private long withPairCode(long state, int elementIndex, long code, long pairMask) {
+        int shift = shift(elementIndex * 2);
+        return (state & ~(pairMask << shift)) | (code << shift);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Layout layout = (Layout) o;
+        return numFloors == layout.numFloors && numElements == layout.numElements && capacity == layout.capacity;
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * numFloors + numElements) * 31 + capacity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Layout{numFloors=%d, numElements=%d, capacity=%d}", numFloors, numElements, capacity);
+    }
+}
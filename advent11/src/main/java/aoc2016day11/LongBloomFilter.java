@@ -0,0 +1,99 @@
+package aoc2016day11;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Bloom filter of primitive longs. A value that was added is always
+ * reported present; a value that was not is reported present with roughly
+ * the false-positive rate the filter was sized for, as long as no more
+ * than the expected number of values are added. The probe positions come
+ * from two mixes of the value combined by double hashing; the high half of
+ * each probe picks a word of the bit array by multiplying and shifting,
+ * so the array can have any length, and the low six bits pick the bit.
+ */
+public class LongBloomFilter {
+
+    private final long[] words;
+    private final int numHashes;
+    private long size;
+
+    /**
+     * @param expectedSize how many values will be added
+     * @param falsePositiveRate the rate of false positives wanted once that many are added
+     */
+    public LongBloomFilter(long expectedSize, double falsePositiveRate) {
+        checkArgument(expectedSize > 0, "expectedSize %s", expectedSize);
+        checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1, "falsePositiveRate %s", falsePositiveRate);
+        double ln2 = Math.log(2);
+        double optimalBits = -expectedSize * Math.log(falsePositiveRate) / (ln2 * ln2);
+        long numWords = Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE));
+        checkArgument(numWords < Integer.MAX_VALUE, "filter for %s values at rate %s is too big", (Object) expectedSize, falsePositiveRate);
+        words = new long[(int) numWords];
+        numHashes = Math.max(1, (int) Math.round(optimalBits / expectedSize * ln2));
+    }
+
+    /**
+     * Adds a value.
+     * @param key the value
+     * @return true if the value was certainly not present before
+     */
+    public boolean add(long key) {
+        long h1 = LongHashSet.mix(key), h2 = LongHashSet.mix(h1) | 1;
+        boolean added = false;
+        for (int i = 0; i < numHashes; i++) {
+            long probe = h1 + i * h2;
+            int word = wordOf(probe);
+            long before = words[word];
+            words[word] = before | (1L << probe);
+            added |= words[word] != before;
+        }
+        if (added) {
+            size++;
+        }
+        return added;
+    }
+
+    /**
+     * @param key the value
+     * @return false if the value was certainly never added
+     */
+    public boolean mightContain(long key) {
+        long h1 = LongHashSet.mix(key), h2 = LongHashSet.mix(h1) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long probe = h1 + i * h2;
+            if ((words[wordOf(probe)] & (1L << probe)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int wordOf(long probe) {
+        return (int) (((probe >>> 32) * words.length) >>> 32);
+    }
+
+    /**
+     * @return how many values were added and reported absent
+     */
+    public long size() {
+        return size;
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    /**
+     * @return size of the bit array in bytes
+     */
+    public long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+
+    /**
+     * @return the false-positive rate expected at the current size
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-numHashes * (double) size / ((double) words.length * Long.SIZE)), numHashes);
+    }
+}
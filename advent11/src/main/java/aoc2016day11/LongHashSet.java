@@ -0,0 +1,156 @@
+package aoc2016day11;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Set of primitive longs backed by a single open-addressing table with
+ * linear probing. Zero marks an empty slot, so membership of zero itself
+ * is tracked by a separate flag. The table doubles when the number of
+ * entries exceeds the load factor.
+ */
+public class LongHashSet {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.6f;
+
+    private final float loadFactor;
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongHashSet(int expectedSize, float loadFactor) {
+        checkArgument(expectedSize >= 0, "expectedSize %s", expectedSize);
+        checkArgument(loadFactor > 0 && loadFactor < 1, "loadFactor %s", loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(expectedSize, loadFactor));
+    }
+
+    static int tableSizeFor(long expectedSize, float loadFactor) {
+        long needed = Math.max(2, (long) Math.ceil(expectedSize / (double) loadFactor));
+        checkArgument(needed <= (1 << 30), "too many entries: %s", expectedSize);
+        return Integer.highestOneBit((int) (needed - 1)) << 1;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * loadFactor);
+    }
+
+    /**
+     * Finalization step of MurmurHash3, which spreads the low-entropy bits
+     * of packed states across the whole word.
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Adds a value to the set.
+     * @param key the value
+     * @return true if the value was not already present
+     */
+    public boolean add(long key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int i = (int) mix(key) & mask;
+        long current;
+        while ((current = table[i]) != 0) {
+            if (current == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+        if (++size > resizeThreshold) {
+            rehash(table.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int i = (int) mix(key) & mask;
+        long current;
+        while ((current = table[i]) != 0) {
+            if (current == key) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private void rehash(int newCapacity) {
+        checkArgument(newCapacity > 0, "table cannot grow beyond %s", table.length);
+        long[] old = table;
+        allocate(newCapacity);
+        for (long key : old) {
+            if (key != 0) {
+                int i = (int) mix(key) & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = key;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        size = 0;
+        containsZero = false;
+    }
+
+    /**
+     * Passes every value to a consumer, in no particular order.
+     * @param action the consumer
+     */
+    public void forEach(LongConsumer action) {
+        if (containsZero) {
+            action.accept(0L);
+        }
+        for (long key : table) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package aoc2016day11;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Map from primitive long to primitive long, backed by parallel
+ * open-addressing tables with linear probing. Zero marks an empty key
+ * slot, so the entry for key zero is held in separate fields. Probing and
+ * growth work as in {@link LongHashSet}.
+ */
+public class LongLongHashMap {
+
+    private final float loadFactor;
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsZero;
+    private long zeroValue;
+
+    public LongLongHashMap() {
+        this(16);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        this(expectedSize, LongHashSet.DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongLongHashMap(int expectedSize, float loadFactor) {
+        checkArgument(expectedSize >= 0, "expectedSize %s", expectedSize);
+        checkArgument(loadFactor > 0 && loadFactor < 1, "loadFactor %s", loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(LongHashSet.tableSizeFor(expectedSize, loadFactor));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * loadFactor);
+    }
+
+    private int slot(long key) {
+        int i = (int) LongHashSet.mix(key) & mask;
+        long current;
+        while ((current = keys[i]) != 0 && current != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Associates a value with a key unless the key is already present.
+     * @return true if the entry was added
+     */
+    public boolean putIfAbsent(long key, long value) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            zeroValue = value;
+            size++;
+            return true;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            return false;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     */
+    public void put(long key, long value) {
+        if (key == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        if (keys[i] == key) {
+            values[i] = value;
+            return;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        return keys[slot(key)] == key;
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+        int i = slot(key);
+        return keys[i] == key ? values[i] : defaultValue;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is absent
+     */
+    public long get(long key) {
+        if (key == 0) {
+            checkArgument(containsZero, "no entry for %s", key);
+            return zeroValue;
+        }
+        int i = slot(key);
+        checkArgument(keys[i] == key, "no entry for %s", key);
+        return values[i];
+    }
+
+    private void rehash(int newCapacity) {
+        checkArgument(newCapacity > 0, "table cannot grow beyond %s", keys.length);
+        long[] oldKeys = keys, oldValues = values;
+        allocate(newCapacity);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        size = 0;
+        containsZero = false;
+    }
+
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    /**
+     * Passes every entry to a consumer, in no particular order.
+     * @param action the consumer
+     */
+    public void forEach(EntryConsumer action) {
+        if (containsZero) {
+            action.accept(0L, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+}
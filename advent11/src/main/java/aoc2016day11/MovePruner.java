@@ -0,0 +1,86 @@
+package aoc2016day11;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops moves that a search need not try. {@link Layout#successors(long, long[], MovePruner)}
+ * consults the pruner once per direction: first to ask whether the
+ * direction is worth generating at all, then to filter the safe moves that
+ * were generated. Pruning applies to forward moves only; searches that run
+ * backward from the win must not use it.
+ */
+public interface MovePruner {
+
+    MovePruner NONE = new MovePruner() {
+        @Override
+        public String toString() {
+            return "NONE";
+        }
+    };
+
+    /**
+     * @param layout the layout
+     * @param state the state being expanded
+     * @param offset +1 for up, -1 for down
+     * @return true if no move in the direction should be generated
+     */
+    default boolean skipDirection(Layout layout, long state, int offset) {
+        return false;
+    }
+
+    /**
+     * Filters the moves in one direction, keeping the survivors in order at
+     * the front of the range. Use {@link Layout#movedItems(long, long)} to
+     * see what each move carries.
+     * @param layout the layout
+     * @param state the state being expanded
+     * @param offset +1 for up, -1 for down
+     * @param successors buffer holding the moves
+     * @param begin index of the first move in the direction
+     * @param end index after the last move in the direction
+     * @return index after the last move kept
+     */
+    default int prune(Layout layout, long state, int offset, long[] successors, int begin, int end) {
+        return end;
+    }
+
+    /**
+     * @param pruners pruners to apply one after another
+     * @return a pruner that skips a direction if any of them does and keeps a move only if all of them do
+     */
+    static MovePruner combine(Iterable<? extends MovePruner> pruners) {
+        List<MovePruner> all = new ArrayList<>();
+        pruners.forEach(all::add);
+        if (all.isEmpty()) {
+            return NONE;
+        }
+        if (all.size() == 1) {
+            return all.get(0);
+        }
+        return new MovePruner() {
+            @Override
+            public boolean skipDirection(Layout layout, long state, int offset) {
+                for (MovePruner pruner : all) {
+                    if (pruner.skipDirection(layout, state, offset)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public int prune(Layout layout, long state, int offset, long[] successors, int begin, int end) {
+                for (MovePruner pruner : all) {
+                    end = pruner.prune(layout, state, offset, successors, begin, end);
+                }
+                return end;
+            }
+
+            @Override
+            public String toString() {
+                return all.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package aoc2016day11;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Breadth-first agent that expands each level in parallel. The frontier
+ * is an array of packed states that is split across a fork/join pool;
+ * each leaf task generates successors into its own buffer and claims
+ * them in a sharded primitive map from canonical state to parent state. Only the
+ * claimed successors make up the next level, so every state is expanded
+ * once and the parent chain from any frontier state is a sequence of real
+ * moves back to the start.
+ */
+public class ParallelBreadthFirstAgent extends Agent {
+
+    private static final int DEFAULT_LEAF_SIZE = 256;
+    private static final long NOT_FOUND = -1L;
+    private static final int EXPECTED_VISITED_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int leafSize;
+    private final LongAdder numExpanded = new LongAdder();
+
+    public ParallelBreadthFirstAgent(int maxMoves) {
+        this(maxMoves, ForkJoinPool.commonPool(), DEFAULT_LEAF_SIZE);
+    }
+
+    public ParallelBreadthFirstAgent(int maxMoves, ForkJoinPool pool, int leafSize) {
+        super(maxMoves);
+        this.pool = checkNotNull(pool);
+        checkArgument(leafSize > 0, "leafSize %s", leafSize);
+        this.leafSize = leafSize;
+    }
+
+    /**
+     * @return number of states expanded during the last play
+     */
+    public long getNumExpanded() {
+        return numExpanded.sum();
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        numExpanded.reset();
+        if (start.isWin()) {
+            return Optional.of(Collections.singletonList(start));
+        }
+        Layout layout = start.getLayout();
+        ConcurrentLongLongHashMap parents = new ConcurrentLongLongHashMap(ConcurrentLongLongHashMap.DEFAULT_NUM_SHARDS, EXPECTED_VISITED_SIZE);
+        parents.putIfAbsent(start.canonical, start.state);
+        AtomicLong win = new AtomicLong(NOT_FOUND);
+        long[] frontier = {start.state};
+        for (int depth = 0; depth < maxMoves && frontier.length > 0; depth++) {
+            frontier = pool.invoke(new Expansion(layout, frontier, 0, frontier.length, parents, win)).toArray();
+            listener.depthReached(depth + 1, frontier.length, parents.size());
+            if (win.get() != NOT_FOUND) {
+                return Optional.of(relabel(traceCanonicalPath(layout, start, win.get(), parents::get)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private class Expansion extends RecursiveTask<LongArrayList> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Layout layout;
+        private final long[] frontier;
+        private final int from, to;
+        private final ConcurrentLongLongHashMap parents;
+        private final AtomicLong win;
+
+        Expansion(Layout layout, long[] frontier, int from, int to, ConcurrentLongLongHashMap parents, AtomicLong win) {
+            this.layout = layout;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.parents = parents;
+            this.win = win;
+        }
+
+        @Override
+        protected LongArrayList compute() {
+            if (to - from <= leafSize) {
+                return expandLeaf();
+            }
+            int middle = (from + to) >>> 1;
+            Expansion left = new Expansion(layout, frontier, from, middle, parents, win);
+            left.fork();
+            LongArrayList right = new Expansion(layout, frontier, middle, to, parents, win).compute();
+            LongArrayList result = left.join();
+            result.addAll(right);
+            return result;
+        }
+
+        private LongArrayList expandLeaf() {
+            LongArrayList generated = new LongArrayList((to - from) * 12);
+            long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+            for (int i = from; i < to; i++) {
+                int count = layout.distinctSuccessors(frontier[i], successors, canonicals, pruner);
+                for (int j = 0; j < count; j++) {
+                    generated.add(successors[j]);
+                    generated.add(canonicals[j]);
+                    generated.add(frontier[i]);
+                }
+            }
+            numExpanded.add(to - from);
+            LongArrayList claimed = new LongArrayList(generated.size() / 3);
+            for (int i = 0; i < generated.size(); i += 3) {
+                long child = generated.get(i), canonical = generated.get(i + 1), parent = generated.get(i + 2);
+                if (parents.putIfAbsent(canonical, parent)) {
+                    claimed.add(child);
+                    if (layout.isWin(child)) {
+                        win.compareAndSet(NOT_FOUND, child);
+                    }
+                }
+            }
+            listener.statesExpanded(to - from, generated.size() / 3, generated.size() / 3 - claimed.size());
+            checkCancelled();
+            return claimed;
+        }
+    }
+
+    public static void main(String[] args) {
+        Building building = Buildings.createPartTwoPuzzleInputBuilding();
+        Agent agent = new ParallelBreadthFirstAgent(64).toggleVerbose();
+        attempt(agent, building);
+    }
+}
@@ -3,20 +3,28 @@ package aoc2016day11;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Interactive game.
+ * Interactive game. Pass the path of a {@link Tablebase} file for the
+ * game's layout as an argument to be told the fewest moves to win from
+ * each position.
  */
 public class Play {
 
     public static void main(String[] args) throws Exception {
 //        MyBuilding b = (MyBuilding) Buildings.createBuildingWith4FloorsAndEverythingOnThirdFloor();
         Building b = (Building) Buildings.gameWith4NextMoves();
+        Tablebase tablebase = args.length > 0 ? Tablebase.load(Paths.get(args[0])) : null;
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
             while (!b.isWin()) {
                 System.out.println(b);
+                if (tablebase != null) {
+                    int distance = tablebase.distance(b);
+                    System.out.println(distance == Tablebase.UNREACHABLE ? "no way to win from here" : String.format("%d moves to win with best play", distance));
+                }
                 List<Building.Move> moves = b.findValidMoves();
                 if (moves.isEmpty()) {
                     System.out.println("game over: no valid moves");
@@ -47,7 +55,7 @@ public class Play {
                     }
                     int moveIndex = Integer.parseInt(line.trim());
                     Building.Move move = moves.get(moveIndex);
-                    b = b.move(move.direction, move.target1, move.target2);
+                    b = b.move(move.direction, move.targets);
                 } else {
                     System.err.println("EOF on stdin");
                 }
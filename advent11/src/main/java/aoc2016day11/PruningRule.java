@@ -0,0 +1,105 @@
+package aoc2016day11;
+
+import java.util.EnumSet;
+
+/**
+ * Domain-specific move prunings, each of which can be turned on by itself.
+ * Combine a set of them with {@link #of(EnumSet)}.
+ */
+public enum PruningRule implements MovePruner {
+
+    /**
+     * Never move down when every floor below the elevator is empty; nothing
+     * down there needs to come up. Never loses a shortest path.
+     */
+    NO_DOWN_TO_EMPTY_FLOORS {
+        @Override
+        public boolean skipDirection(Layout layout, long state, int offset) {
+            return offset < 0 && layout.isEmptyBelow(state, layout.elevator(state));
+        }
+    },
+
+    /**
+     * When some move carries two or more items up, do not also try moves
+     * that carry one item up. A common heuristic for the puzzle rather than
+     * a proven one.
+     */
+    PREFER_MORE_UP {
+        @Override
+        public int prune(Layout layout, long state, int offset, long[] successors, int begin, int end) {
+            return offset > 0 ? keepLoadsOfSize(layout, state, successors, begin, end, false) : end;
+        }
+    },
+
+    /**
+     * When some move carries one item down, do not also try moves that carry
+     * more. A common heuristic for the puzzle rather than a proven one.
+     */
+    PREFER_ONE_DOWN {
+        @Override
+        public int prune(Layout layout, long state, int offset, long[] successors, int begin, int end) {
+            return offset < 0 ? keepLoadsOfSize(layout, state, successors, begin, end, true) : end;
+        }
+    },
+
+    /**
+     * Try only the first of the moves that carry a generator together with
+     * its own microchip. Every such pair on the elevator floor is on the same
+     * floors as the others, so the resulting states differ only by a swap of
+     * elements. Never loses a shortest path.
+     */
+    ONE_PAIR_PER_MOVE {
+        @Override
+        public int prune(Layout layout, long state, int offset, long[] successors, int begin, int end) {
+            boolean pairMoved = false;
+            int kept = begin;
+            for (int i = begin; i < end; i++) {
+                if (isPair(layout.movedItems(state, successors[i]))) {
+                    if (pairMoved) {
+                        continue;
+                    }
+                    pairMoved = true;
+                }
+                successors[kept++] = successors[i];
+            }
+            return kept;
+        }
+    };
+
+    private static boolean isPair(long items) {
+        int generator = Long.numberOfTrailingZeros(items);
+        return (generator & 1) == 0 && items == (3L << generator);
+    }
+
+    /**
+     * Keeps only single-item loads, or only multi-item loads, if there are any.
+     */
+    private static int keepLoadsOfSize(Layout layout, long state, long[] successors, int begin, int end, boolean single) {
+        boolean any = false;
+        for (int i = begin; i < end && !any; i++) {
+            any = (Long.bitCount(layout.movedItems(state, successors[i])) == 1) == single;
+        }
+        if (!any) {
+            return end;
+        }
+        int kept = begin;
+        for (int i = begin; i < end; i++) {
+            if ((Long.bitCount(layout.movedItems(state, successors[i])) == 1) == single) {
+                successors[kept++] = successors[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @param rules the rules to apply
+     * @return a pruner that applies all of them
+     */
+    public static MovePruner of(EnumSet<PruningRule> rules) {
+        return MovePruner.combine(rules);
+    }
+
+    public static MovePruner all() {
+        return of(EnumSet.allOf(PruningRule.class));
+    }
+}
@@ -0,0 +1,102 @@
+package aoc2016day11;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Receives progress events from a running search. Agents report
+ * expansions in batches rather than per state, so an implementation may do
+ * a little work per call, but it must be thread-safe: the parallel agent
+ * reports from several threads at once.
+ */
+public interface SearchListener {
+
+    SearchListener NONE = new SearchListener() {
+    };
+
+    /**
+     * Called when a search reaches a new depth: a level for breadth-first
+     * agents, a bound on the estimated total for A* and IDA*.
+     * @param depth the depth
+     * @param frontierSize states waiting to be expanded, or zero if the agent keeps none
+     * @param visitedSize distinct states seen so far, or zero if the agent does not keep them
+     */
+    default void depthReached(int depth, long frontierSize, long visitedSize) {
+    }
+
+    /**
+     * Called with each batch of expansions and once more when the search
+     * ends, so that the number is current even between depths.
+     * @param visitedSize distinct states the agent holds: those seen so
+     *                    far, or those in a bounded table
+     */
+    default void visitedSizeUpdated(long visitedSize) {
+    }
+
+    /**
+     * Called after a batch of states is expanded.
+     * @param expanded states expanded
+     * @param generated successors generated, after dropping swaps of elements
+     * @param duplicates generated successors that had already been seen
+     */
+    default void statesExpanded(long expanded, long generated, long duplicates) {
+    }
+
+    /**
+     * Called once when a search ends, however it ends, by agents that have
+     * something to say about the resources they used.
+     * @param summary one line of text
+     */
+    default void searchEnded(String summary) {
+    }
+
+    /**
+     * Polled by agents whenever they report. A search whose listener says
+     * it is cancelled stops by throwing
+     * {@link java.util.concurrent.CancellationException}.
+     * @return true if the search should stop
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * @param listeners listeners to notify in order
+     * @return a listener that passes every event to all of them and is
+     * cancelled if any of them is
+     */
+    static SearchListener combine(SearchListener... listeners) {
+        List<SearchListener> all = new ArrayList<>(Arrays.asList(listeners));
+        all.removeIf(listener -> listener == NONE);
+        if (all.size() == 1) {
+            return all.get(0);
+        }
+        return new SearchListener() {
+            @Override
+            public void depthReached(int depth, long frontierSize, long visitedSize) {
+                all.forEach(listener -> listener.depthReached(depth, frontierSize, visitedSize));
+            }
+
+            @Override
+            public void visitedSizeUpdated(long visitedSize) {
+                all.forEach(listener -> listener.visitedSizeUpdated(visitedSize));
+            }
+
+            @Override
+            public void statesExpanded(long expanded, long generated, long duplicates) {
+                all.forEach(listener -> listener.statesExpanded(expanded, generated, duplicates));
+            }
+
+            @Override
+            public void searchEnded(String summary) {
+                all.forEach(listener -> listener.searchEnded(summary));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return all.stream().anyMatch(SearchListener::isCancelled);
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package aoc2016day11;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Listener that adds up search events in {@link LongAdder}s and writes a
+ * one-line summary whenever an interval has passed since the last one.
+ * The check for the interval is made on each event; no thread is started.
+ */
+public class SearchReporter implements SearchListener {
+
+    private final Consumer<String> sink;
+    private final long intervalNanos;
+    private final LongAdder expanded = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final AtomicLong nextReportNanos;
+    private volatile int depth;
+    private volatile long frontierSize;
+    private volatile long visitedSize;
+    private long lastReportNanos;
+    private long lastExpanded;
+
+    public SearchReporter(Consumer<String> sink, long intervalMillis) {
+        checkArgument(intervalMillis >= 0, "intervalMillis %s", intervalMillis);
+        this.sink = checkNotNull(sink);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.lastReportNanos = System.nanoTime();
+        this.nextReportNanos = new AtomicLong(lastReportNanos + intervalNanos);
+    }
+
+    @Override
+    public void depthReached(int depth, long frontierSize, long visitedSize) {
+        this.depth = depth;
+        this.frontierSize = frontierSize;
+        this.visitedSize = visitedSize;
+        maybeReport();
+    }
+
+    @Override
+    public void visitedSizeUpdated(long visitedSize) {
+        this.visitedSize = visitedSize;
+    }
+
+    @Override
+    public void statesExpanded(long expanded, long generated, long duplicates) {
+        this.expanded.add(expanded);
+        this.generated.add(generated);
+        this.duplicates.add(duplicates);
+        maybeReport();
+    }
+
+    /**
+     * Writes a last summary of the counts, then the agent's own summary.
+     */
+    @Override
+    public void searchEnded(String summary) {
+        report();
+        sink.accept(summary);
+    }
+
+    private void maybeReport() {
+        long now = System.nanoTime();
+        long due = nextReportNanos.get();
+        if (now - due >= 0 && nextReportNanos.compareAndSet(due, now + intervalNanos)) {
+            report(now);
+        }
+    }
+
+    /**
+     * Writes a summary now, whether or not the interval has passed.
+     */
+    public void report() {
+        report(System.nanoTime());
+    }
+
+    private synchronized void report(long now) {
+        long expandedSoFar = expanded.sum();
+        double seconds = Math.max(1, now - lastReportNanos) / 1e9;
+        double rate = (expandedSoFar - lastExpanded) / seconds;
+        lastReportNanos = now;
+        lastExpanded = expandedSoFar;
+        long visited = visitedSize;
+        String heapPerState = visited > 0 ? String.format("%d", usedHeap() / visited) : "?";
+        sink.accept(String.format("depth %d; frontier %d; visited %d; %d expanded at %.0f/s; duplicate ratio %.3f; ~%s heap bytes/state",
+                depth, frontierSize, visited, expandedSoFar, rate, getDuplicateRatio(), heapPerState));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getFrontierSize() {
+        return frontierSize;
+    }
+
+    public long getVisitedSize() {
+        return visitedSize;
+    }
+
+    public long getExpanded() {
+        return expanded.sum();
+    }
+
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return fraction of generated successors that had already been seen
+     */
+    public double getDuplicateRatio() {
+        long g = generated.sum();
+        return g == 0 ? 0 : duplicates.sum() / (double) g;
+    }
+}
@@ -0,0 +1,153 @@
+package aoc2016day11;
+
+import javax.annotation.Nullable;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Listener that keeps the latest statistics of one search for JMX. The
+ * agent publishes to it only in the batches in which it reports progress,
+ * so reading the statistics costs the search nothing and they lag by at
+ * most one batch. An agent {@link Agent#monitorWith(MBeanServer) set to
+ * monitor} registers one for the duration of every play. Agents and batch
+ * solvers monitor with the platform MBean server when the system property
+ * {@value #MONITOR_PROPERTY} is true.
+ */
+public class SearchStats implements SearchStatsMBean, SearchListener {
+
+    public static final String DOMAIN = "aoc2016day11";
+    public static final String MONITOR_PROPERTY = "aoc2016day11.monitor";
+
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private final String agent;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder expanded = new LongAdder();
+    private volatile int depth;
+    private volatile long frontierSize;
+    private volatile long visitedCount;
+    private volatile boolean cancelRequested;
+
+    public SearchStats(String agent) {
+        this.agent = checkNotNull(agent);
+    }
+
+    @Override
+    public void depthReached(int depth, long frontierSize, long visitedSize) {
+        this.depth = depth;
+        this.frontierSize = frontierSize;
+        this.visitedCount = visitedSize;
+    }
+
+    @Override
+    public void visitedSizeUpdated(long visitedSize) {
+        this.visitedCount = visitedSize;
+    }
+
+    @Override
+    public void statesExpanded(long expanded, long generated, long duplicates) {
+        this.expanded.add(expanded);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    @Override
+    public String getAgent() {
+        return agent;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public long getFrontierSize() {
+        return frontierSize;
+    }
+
+    @Override
+    public long getVisitedCount() {
+        return visitedCount;
+    }
+
+    @Override
+    public long getStatesExpanded() {
+        return expanded.sum();
+    }
+
+    @Override
+    public double getExpansionRate() {
+        long nanos = System.nanoTime() - startNanos;
+        return nanos == 0 ? 0 : expanded.sum() / (nanos / 1e9);
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    @Override
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    /**
+     * Registers these statistics under a name unique to this JVM.
+     * @param server the server, usually the platform MBean server
+     * @return a registration that unregisters them when closed
+     */
+    public Registration register(MBeanServer server) {
+        try {
+            ObjectName name = new ObjectName(DOMAIN, "type", "Search");
+            name = ObjectName.getInstance(String.format("%s,agent=%s,id=%d", name, ObjectName.quote(agent), ids.incrementAndGet()));
+            server.registerMBean(this, name);
+            return new Registration(server, name);
+        } catch (JMException e) {
+            throw new IllegalStateException("could not register search statistics", e);
+        }
+    }
+
+    /**
+     * @return the platform MBean server if {@value #MONITOR_PROPERTY} is
+     * true, else null
+     */
+    static @Nullable MBeanServer defaultServer() {
+        return Boolean.getBoolean(MONITOR_PROPERTY) ? ManagementFactory.getPlatformMBeanServer() : null;
+    }
+
+    public static final class Registration implements AutoCloseable {
+
+        private final MBeanServer server;
+        public final ObjectName name;
+
+        private Registration(MBeanServer server, ObjectName name) {
+            this.server = server;
+            this.name = name;
+        }
+
+        @Override
+        public void close() {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                throw new IllegalStateException("could not unregister " + name, e);
+            }
+        }
+    }
+}
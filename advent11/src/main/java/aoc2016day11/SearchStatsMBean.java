@@ -0,0 +1,34 @@
+package aoc2016day11;
+
+/**
+ * Management interface of a running search, for {@code jconsole} and other
+ * JMX clients.
+ */
+public interface SearchStatsMBean {
+
+    String getAgent();
+
+    int getDepth();
+
+    long getFrontierSize();
+
+    long getVisitedCount();
+
+    long getStatesExpanded();
+
+    /**
+     * @return states expanded per second since the search started
+     */
+    double getExpansionRate();
+
+    long getElapsedMillis();
+
+    boolean isCancelRequested();
+
+    /**
+     * Asks the search to stop. It stops at its next progress report, by
+     * throwing {@link java.util.concurrent.CancellationException} from
+     * {@link Agent#play(Building)}.
+     */
+    void cancel();
+}
@@ -0,0 +1,304 @@
+package aoc2016day11;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Size-bounded store of solutions keyed by the canonical form of their
+ * start, evicting the least recently used. A solution is kept as the
+ * canonical states along its path, eight bytes per move. It can therefore
+ * answer for any start with the same canonical form. The path is replayed
+ * from the actual start through {@link Building#move(Direction, List)}, so
+ * every step is checked against the rules before the path is returned.
+ * <p>
+ * A cache opened on a file keeps a log in it: every solution added, every
+ * solution used and every solution evicted or found invalid appends a record, so
+ * the cost of a change does not grow with the size of the cache, and
+ * reading the log back restores the order of use as well as the
+ * solutions. The log is rewritten with one record per solution when it is
+ * opened and whenever it has grown to {@link #COMPACT_RATIO} records per
+ * solution that fits.
+ */
+public class SolutionCache implements Closeable {
+
+    private static final int MAGIC = 0x52544753; // "RTGS"
+    private static final int COMPACT_RATIO = 4;
+
+    private static final byte PUT = 1, USE = 2, REMOVE = 3;
+
+    private static final class Key {
+
+        final Layout layout;
+        final long canonical;
+
+        Key(Layout layout, long canonical) {
+            this.layout = layout;
+            this.canonical = canonical;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return canonical == that.canonical && layout.equals(that.layout);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(layout, canonical);
+        }
+    }
+
+    private final int maxEntries;
+    private final @Nullable Path file;
+    private final LinkedHashMap<Key, long[]> entries;
+    private @Nullable DataOutputStream log;
+    private int numRecords;
+    private @Nullable Key evicted;
+
+    /**
+     * Creates a cache that is kept in memory only.
+     * @param maxEntries how many solutions to keep
+     */
+    public SolutionCache(int maxEntries) {
+        this(maxEntries, null);
+    }
+
+    private SolutionCache(int maxEntries, @Nullable Path file) {
+        checkArgument(maxEntries > 0, "maxEntries %s", maxEntries);
+        this.maxEntries = maxEntries;
+        this.file = file;
+        this.entries = new LinkedHashMap<Key, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, long[]> eldest) {
+                if (size() <= SolutionCache.this.maxEntries) {
+                    return false;
+                }
+                if (log != null) {
+                    evicted = eldest.getKey();
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Opens a cache backed by a file, loading the file if it exists. If the
+     * file holds more solutions than fit, the least recently used are dropped.
+     * A record cut short at the end of the file, as a crash while writing
+     * leaves it, is ignored.
+     * @param file the file
+     * @param maxEntries how many solutions to keep
+     * @return the cache, which should be closed
+     * @throws IOException if the file exists but cannot be read, or cannot be written
+     */
+    public static SolutionCache open(Path file, int maxEntries) throws IOException {
+        SolutionCache cache = new SolutionCache(maxEntries, checkNotNull(file));
+        if (Files.exists(file)) {
+            cache.read(file);
+        }
+        synchronized (cache) {
+            cache.compact();
+        }
+        return cache;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Looks up a solution and replays it from the start. A solution that
+     * cannot be replayed is removed.
+     * @param start the start
+     * @return the path, or empty if none is cached or the cached one is invalid
+     * @throws IOException if the use cannot be written to the file
+     */
+    public synchronized Optional<List<Building>> get(Building start) throws IOException {
+        Key key = new Key(start.getLayout(), start.canonical);
+        long[] steps = entries.get(key);
+        if (steps == null) {
+            return Optional.empty();
+        }
+        List<Building> path = replay(start, steps);
+        if (path == null) {
+            entries.remove(key);
+            append(REMOVE, key, null);
+            return Optional.empty();
+        }
+        append(USE, key, null);
+        return Optional.of(path);
+    }
+
+    /**
+     * Finds for each step the move to a building with the stored canonical
+     * form, and makes that move with {@link Building#move(Direction, List)}.
+     * @return the path, or null if some step cannot be made or the path
+     * does not end in a win
+     */
+    @Nullable
+    private static List<Building> replay(Building start, long[] steps) {
+        List<Building> path = new ArrayList<>(steps.length + 1);
+        Building current = start;
+        path.add(current);
+        for (long canonical : steps) {
+            Building.Move step = null;
+            for (Building.Move move : current.findValidMoves()) {
+                if (move.to.canonical == canonical) {
+                    step = move;
+                    break;
+                }
+            }
+            if (step == null) {
+                return null;
+            }
+            try {
+                current = current.move(step.direction, step.targets);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            path.add(current);
+        }
+        return current.isWin() ? Collections.unmodifiableList(path) : null;
+    }
+
+    /**
+     * Adds a solution, and appends it to the file if the cache has one.
+     * @param path a winning path; it should be optimal, because later
+     * lookups trust that no shorter path exists
+     * @throws IOException if the file cannot be written
+     */
+    public void put(List<Building> path) throws IOException {
+        checkArgument(!path.isEmpty() && path.get(path.size() - 1).isWin(), "not a winning path");
+        Building start = path.get(0);
+        long[] steps = new long[path.size() - 1];
+        for (int i = 1; i < path.size(); i++) {
+            steps[i - 1] = path.get(i).canonical;
+        }
+        Key key = new Key(start.getLayout(), start.canonical);
+        synchronized (this) {
+            entries.put(key, steps);
+            append(PUT, key, steps);
+            if (evicted != null) {
+                Key removed = evicted;
+                evicted = null;
+                append(REMOVE, removed, null);
+            }
+        }
+    }
+
+    /**
+     * Closes the file, if the cache has one. The cache can still be used in
+     * memory afterward, but nothing more is written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private void append(byte type, Key key, @Nullable long[] steps) throws IOException {
+        if (log == null) {
+            return;
+        }
+        writeRecord(log, type, key, steps);
+        log.flush();
+        if (++numRecords >= COMPACT_RATIO * maxEntries) {
+            compact();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, Key key, @Nullable long[] steps) throws IOException {
+        out.writeByte(type);
+        out.writeInt(key.layout.numFloors);
+        out.writeInt(key.layout.numElements);
+        out.writeInt(key.layout.capacity);
+        out.writeLong(key.canonical);
+        if (steps != null) {
+            out.writeInt(steps.length);
+            for (long step : steps) {
+                out.writeLong(step);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file with the solutions from least to most recently
+     * used, so that reading them back in order restores the order of use,
+     * and reopens it for appending.
+     */
+    private void compact() throws IOException {
+        close();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            for (Map.Entry<Key, long[]> entry : entries.entrySet()) {
+                writeRecord(out, PUT, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+        numRecords = entries.size();
+    }
+
+    private void read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a solution cache");
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                try {
+                    Key key = new Key(new Layout(in.readInt(), in.readInt(), in.readInt()), in.readLong());
+                    if (type == PUT) {
+                        int length = in.readInt();
+                        if (length < 0) {
+                            throw new IOException("negative path length in " + file);
+                        }
+                        long[] steps = new long[length];
+                        for (int j = 0; j < steps.length; j++) {
+                            steps[j] = in.readLong();
+                        }
+                        entries.put(key, steps);
+                    } else if (type == USE) {
+                        entries.get(key);
+                    } else if (type == REMOVE) {
+                        entries.remove(key);
+                    } else {
+                        throw new IOException("unknown record type " + type + " in " + file);
+                    }
+                } catch (EOFException e) {
+                    break;
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("corrupt record in " + file, e);
+                }
+            }
+        }
+    }
+}
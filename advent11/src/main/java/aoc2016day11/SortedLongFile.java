@@ -0,0 +1,154 @@
+package aoc2016day11;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * File of longs in ascending order, read through memory mappings. Files
+ * bigger than one mapping can hold are mapped in chunks.
+ */
+final class SortedLongFile implements Closeable {
+
+    private static final int CHUNK_SIZE = 1 << 27;
+
+    private final FileChannel channel;
+    private final LongBuffer[] chunks;
+    private final long size;
+
+    private SortedLongFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        checkArgument(channel.size() % Long.BYTES == 0, "file size %s is not a whole number of longs", channel.size());
+        this.size = channel.size() / Long.BYTES;
+        chunks = new LongBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = (long) i * CHUNK_SIZE;
+            long length = Math.min(CHUNK_SIZE, size - first);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, first * Long.BYTES, length * Long.BYTES).asLongBuffer();
+        }
+    }
+
+    public static SortedLongFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SortedLongFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long get(long index) {
+        return chunks[(int) (index / CHUNK_SIZE)].get((int) (index % CHUNK_SIZE));
+    }
+
+    /**
+     * @param value the value
+     * @return true if the file holds the value; found by binary search
+     */
+    public boolean contains(long value) {
+        long low = 0, high = size - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long found = get(mid);
+            if (found < value) {
+                low = mid + 1;
+            } else if (found > value) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Closes files and deletes the directory that held them, with anything
+     * else in it. Failures are reported but not thrown, because this runs
+     * on the way out of a search.
+     * @param directory the directory, or null if it was never created
+     * @param files the files to close
+     */
+    static void deleteAll(@Nullable Path directory, List<SortedLongFile> files) {
+        for (SortedLongFile file : files) {
+            try {
+                file.close();
+            } catch (IOException ignore) {
+            }
+        }
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                Files.deleteIfExists(entry);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            System.err.format("could not delete %s: %s%n", directory, e);
+        }
+    }
+
+    /**
+     * Appends longs to a new file through a small buffer. The caller is
+     * responsible for the order.
+     */
+    static final class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        private long count;
+
+        public Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        public void add(long value) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putLong(value);
+            count++;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package aoc2016day11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Table of the fewest moves to win from every canonical state of a layout,
+ * one byte per state. The table is built by a single breadth-first search
+ * backward from the goal; moves are reversible, so the distance from the
+ * goal is the distance to it. A table written to a file can be memory-mapped
+ * later and answers queries in constant time, and an optimal path is walked
+ * greedily by always moving to a state one move closer.
+ */
+public class Tablebase {
+
+    public static final int UNREACHABLE = -1;
+
+    private static final int MAGIC = 0x52544732; // "RTG2"
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    private static final int UNKNOWN = 0xFF;
+
+    private final Layout layout;
+    private final CanonicalIndex index;
+    private final ByteBuffer distances;
+
+    private Tablebase(Layout layout, CanonicalIndex index, ByteBuffer distances) {
+        this.layout = checkNotNull(layout);
+        this.index = checkNotNull(index);
+        this.distances = checkNotNull(distances);
+    }
+
+    /**
+     * Receives the states reached by {@link #searchBackward}.
+     */
+    interface RetrogradeVisitor {
+
+        /**
+         * @param canonical the canonical form of a state reached
+         * @param towardGoal the state it was reached from, one move nearer the goal
+         * @param depth moves from the goal
+         * @return true if the state is new and should be expanded
+         */
+        boolean visit(long canonical, long towardGoal, int depth);
+
+        /**
+         * Called after each level.
+         * @param depth moves from the goal of the states in the new level
+         * @param expanded states expanded to make the level
+         * @param generated successors generated by them
+         * @param levelSize states in the new level
+         * @return false to stop the search
+         */
+        default boolean levelDone(int depth, long expanded, long generated, long levelSize) {
+            return true;
+        }
+    }
+
+    /**
+     * Breadth-first search backward from the goal. Moves are reversible, so
+     * the states at each depth are those that many moves from winning. The
+     * levels hold canonical states.
+     * @param layout the layout
+     * @param maxDepth depth at which to stop
+     * @param visitor receives each state generated and decides whether it is new
+     */
+    static void searchBackward(Layout layout, int maxDepth, RetrogradeVisitor visitor) {
+        LongArrayList level = new LongArrayList(), next = new LongArrayList();
+        level.add(layout.winState());
+        long[] successors = new long[layout.maxSuccessors()], canonicals = new long[successors.length];
+        for (int depth = 1; depth <= maxDepth && !level.isEmpty(); depth++) {
+            long generated = 0;
+            for (int j = 0; j < level.size(); j++) {
+                long state = level.get(j);
+                int count = layout.distinctSuccessors(state, successors, canonicals);
+                generated += count;
+                for (int i = 0; i < count; i++) {
+                    if (visitor.visit(canonicals[i], state, depth)) {
+                        next.add(canonicals[i]);
+                    }
+                }
+            }
+            LongArrayList expanded = level;
+            level = next;
+            next = expanded;
+            if (!visitor.levelDone(depth, expanded.size(), generated, level.size())) {
+                break;
+            }
+            next.clear();
+        }
+    }
+
+    /**
+     * Builds the table with a breadth-first search backward from the goal.
+     * @param layout the layout
+     * @return the table
+     */
+    public static Tablebase build(Layout layout) {
+        CanonicalIndex index = new CanonicalIndex(layout);
+        checkArgument(index.size <= Integer.MAX_VALUE, "%s has %s canonical states; too many for one table", layout, index.size);
+        byte[] distances = new byte[(int) index.size];
+        Arrays.fill(distances, (byte) UNKNOWN);
+        distances[(int) index.rank(layout.winState())] = 0;
+        searchBackward(layout, Integer.MAX_VALUE, (canonical, towardGoal, depth) -> {
+            int rank = (int) index.rank(canonical);
+            if ((distances[rank] & 0xFF) != UNKNOWN) {
+                return false;
+            }
+            if (depth >= UNKNOWN) {
+                throw new IllegalStateException(layout + " has states more than " + (UNKNOWN - 1) + " moves from the goal");
+            }
+            distances[rank] = (byte) depth;
+            return true;
+        });
+        return new Tablebase(layout, index, ByteBuffer.wrap(distances));
+    }
+
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(layout.numFloors).putInt(layout.numElements).putInt(layout.capacity).putLong(index.size);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer body = distances.duplicate();
+            body.clear();
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a table written by {@link #write(Path)}.
+     * @param file the file
+     * @return the table
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static Tablebase load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("truncated header in " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a tablebase: " + file);
+            }
+            Layout layout = new Layout(header.getInt(), header.getInt(), header.getInt());
+            CanonicalIndex index = new CanonicalIndex(layout);
+            long size = header.getLong();
+            if (size != index.size || channel.size() != HEADER_SIZE + size) {
+                throw new IOException("size mismatch in " + file);
+            }
+            return new Tablebase(layout, index, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size));
+        }
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @param state a state of this table's layout
+     * @return the fewest moves to win, or {@link #UNREACHABLE}
+     */
+    public int distance(long state) {
+        if (layout.isWin(state)) {
+            return 0;
+        }
+        int distance = distances.get((int) index.rank(layout.canonicalize(state))) & 0xFF;
+        return distance == UNKNOWN ? UNREACHABLE : distance;
+    }
+
+    public int distance(Building building) {
+        checkArgument(layout.equals(building.getLayout()), "building layout %s does not match table layout %s", building.getLayout(), layout);
+        return distance(building.state);
+    }
+
+    /**
+     * Walks an optimal path by always moving to a state one move closer.
+     * @param start the start
+     * @return the path, or empty if the goal cannot be reached
+     */
+    public Optional<List<Building>> solve(Building start) {
+        int distance = distance(start);
+        if (distance == UNREACHABLE) {
+            return Optional.empty();
+        }
+        List<Building> path = new ArrayList<>(distance + 1);
+        path.add(start);
+        long current = start.state;
+        long[] successors = new long[layout.maxSuccessors()];
+        while (distance > 0) {
+            int count = layout.successors(current, successors);
+            long next = current;
+            for (int i = 0; i < count && next == current; i++) {
+                if (distance(successors[i]) == distance - 1) {
+                    next = successors[i];
+                }
+            }
+            if (next == current) {
+                throw new IllegalStateException("table is inconsistent at " + new Building(layout, current));
+            }
+            current = next;
+            distance--;
+            path.add(new Building(layout, current));
+        }
+        return Optional.of(Collections.unmodifiableList(path));
+    }
+
+    /**
+     * Builds a table and writes it to a file.
+     * Usage: {@code Tablebase NUM_FLOORS NUM_ELEMENTS FILE [CAPACITY]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            System.err.println("usage: Tablebase NUM_FLOORS NUM_ELEMENTS FILE [CAPACITY]");
+            System.exit(1);
+        }
+        int capacity = args.length > 3 ? Integer.parseInt(args[3]) : Layout.DEFAULT_CAPACITY;
+        Layout layout = new Layout(Integer.parseInt(args[0]), Integer.parseInt(args[1]), capacity);
+        long start = System.currentTimeMillis();
+        Tablebase tablebase = build(layout);
+        Path file = Paths.get(args[2]);
+        tablebase.write(file);
+        System.out.format("wrote %d states of %s to %s in %d ms%n", tablebase.index.size, layout, file, System.currentTimeMillis() - start);
+    }
+}
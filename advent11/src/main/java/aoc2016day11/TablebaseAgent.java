@@ -0,0 +1,36 @@
+package aoc2016day11;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Agent that looks up the answer in a {@link Tablebase} instead of searching.
+ */
+public class TablebaseAgent extends Agent {
+
+    private final Tablebase tablebase;
+
+    public TablebaseAgent(int maxMoves, Tablebase tablebase) {
+        super(maxMoves);
+        this.tablebase = checkNotNull(tablebase);
+    }
+
+    @Override
+    protected Optional<List<Building>> solve(Building start) {
+        int distance = tablebase.distance(start);
+        if (distance == Tablebase.UNREACHABLE || distance > maxMoves) {
+            return Optional.empty();
+        }
+        return tablebase.solve(start);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Building building = Buildings.createPartTwoPuzzleInputBuilding();
+        Tablebase tablebase = args.length > 0 ? Tablebase.load(Paths.get(args[0])) : Tablebase.build(building.getLayout());
+        attempt(new TablebaseAgent(64, tablebase), building);
+    }
+}
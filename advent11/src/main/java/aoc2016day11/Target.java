@@ -14,6 +14,10 @@ public class Target {
         this.kind = checkNotNull(kind);
     }
 
+    public int item() {
+        return Layout.item(elementIndex, kind);
+    }
+
 //    public ImmutableList<Element> apply(Direction direction, ImmutableList<Element> elements) {
 //        ImmutableList.Builder<Element> b = ImmutableList.builder();
 //        for (int i = 0; i < elements.size(); i++) {
@@ -1,32 +1,263 @@
 package aoc2016day11;
 
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Measures how agents scale with the size of the puzzle. Each agent
+ * solves buildings with every item on the bottom floor, for a grid of
+ * floor and element counts. Each cell of the grid is a task on a
+ * fixed-size pool, and every cell is measured: one the agent cannot solve
+ * within the time limit is recorded as a timeout, and one where the agent
+ * throws is recorded as a failure, so the results show where the agents
+ * fall off a cliff without that cliff holding up the other cells.
+ */
 public class Trajectory {
 
-    public static void main(String[] args) {
-        int maxNumElements = 5, numFloors = 4, maxMoves = 64;
-        List<Integer> moveCounts = new ArrayList<>();
-        for (int numElements = 1; numElements < maxNumElements; numElements++) {
-            Buildings.Builder bb = Buildings.build(numFloors);
-            for (int i = 0; i < numElements; i++) {
-                bb.add(0, 0);
+    public static final int MIN_FLOORS = 2;
+
+    private static final String CSV_HEADER = "agent,floors,elements,status,moves,expanded,peak_visited,wall_millis,allocated_bytes";
+
+    public enum Status {
+        SOLVED, UNSOLVABLE, TIMEOUT, FAILED
+    }
+
+    public enum AgentKind {
+        BFS(BreadthFirstAgent::new),
+        ASTAR(AStarAgent::new),
+        BIDIRECTIONAL(BidirectionalAgent::new),
+        IDASTAR(maxMoves -> new IdaStarAgent(maxMoves, 1 << 20));
+
+        private final IntFunction<Agent> factory;
+
+        AgentKind(IntFunction<Agent> factory) {
+            this.factory = factory;
+        }
+
+        public Agent create(int maxMoves) {
+            return factory.apply(maxMoves);
+        }
+    }
+
+    public static class Result {
+
+        public final AgentKind agent;
+        public final int numFloors, numElements;
+        public final Status status;
+        public final int moves;
+        public final long expanded, peakVisited, wallMillis;
+        /**
+         * Bytes allocated by the thread that ran the agent, or -1 if the
+         * JVM does not measure allocation per thread.
+         */
+        public final long allocatedBytes;
+
+        public Result(AgentKind agent, int numFloors, int numElements, Status status, int moves, long expanded, long peakVisited, long wallMillis, long allocatedBytes) {
+            this.agent = checkNotNull(agent);
+            this.numFloors = numFloors;
+            this.numElements = numElements;
+            this.status = checkNotNull(status);
+            this.moves = moves;
+            this.expanded = expanded;
+            this.peakVisited = peakVisited;
+            this.wallMillis = wallMillis;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String toCsv() {
+            return String.format("%s,%d,%d,%s,%d,%d,%d,%d,%d", agent.name().toLowerCase(), numFloors, numElements,
+                    status.name().toLowerCase(), moves, expanded, peakVisited, wallMillis, allocatedBytes);
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + toCsv() + "}";
+        }
+    }
+
+    /**
+     * Adds up expansions and keeps the largest visited size, and asks the
+     * search to stop once its time is up or it has expanded too many states.
+     */
+    private static class Meter implements SearchListener {
+
+        private final long deadlineNanos;
+        private final long expansionLimit;
+        private long expanded, peakVisited;
+
+        Meter(long timeLimitMillis, long expansionLimit) {
+            deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+            this.expansionLimit = expansionLimit;
+        }
+
+        @Override
+        public void depthReached(int depth, long frontierSize, long visitedSize) {
+            peakVisited = Math.max(peakVisited, visitedSize);
+        }
+
+        @Override
+        public void visitedSizeUpdated(long visitedSize) {
+            peakVisited = Math.max(peakVisited, visitedSize);
+        }
+
+        @Override
+        public void statesExpanded(long expanded, long generated, long duplicates) {
+            this.expanded += expanded;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return expanded >= expansionLimit || System.nanoTime() - deadlineNanos > 0;
+        }
+    }
+
+    private final int maxMoves;
+    private final long timeLimitMillis;
+    private final long expansionLimit;
+
+    /**
+     * @param maxMoves max moves of every agent
+     * @param timeLimitMillis time allowed for each solve
+     */
+    public Trajectory(int maxMoves, long timeLimitMillis) {
+        this(maxMoves, timeLimitMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param expansionLimit expansions after which a solve counts as timed
+     *                       out, so that tests do not depend on the speed of the machine
+     */
+    Trajectory(int maxMoves, long timeLimitMillis, long expansionLimit) {
+        checkArgument(maxMoves >= 0, "maxMoves >= 0");
+        checkArgument(timeLimitMillis > 0, "timeLimitMillis %s", timeLimitMillis);
+        checkArgument(expansionLimit > 0, "expansionLimit %s", expansionLimit);
+        this.maxMoves = maxMoves;
+        this.timeLimitMillis = timeLimitMillis;
+        this.expansionLimit = expansionLimit;
+    }
+
+    public static Building createStart(int numFloors, int numElements) {
+        Buildings.Builder bb = Buildings.build(numFloors);
+        for (int i = 0; i < numElements; i++) {
+            bb.add(0, 0);
+        }
+        return bb.finish(0);
+    }
+
+    /**
+     * Solves one configuration on the calling thread.
+     */
+    public Result measure(AgentKind kind, int numFloors, int numElements) {
+        Building start = createStart(numFloors, numElements);
+        Meter meter = new Meter(timeLimitMillis, expansionLimit);
+        Agent agent = kind.create(maxMoves).listenWith(meter);
+        long allocatedBefore = allocatedBytes();
+        long startNanos = System.nanoTime();
+        Status status;
+        int moves = -1;
+        try {
+            Optional<List<Building>> strategy = agent.play(start);
+            status = strategy.isPresent() ? Status.SOLVED : Status.UNSOLVABLE;
+            if (strategy.isPresent()) {
+                moves = Buildings.countMoves(strategy.get());
             }
-            Building building = bb.finish(0);
-            Agent agent = new BreadthFirstAgent(maxMoves);
-            System.out.format("%splaying with %d elements...", building, numElements);
-            Optional<List<Building>> strategy = agent.play(building);
-            if (!strategy.isPresent()) {
-                System.err.println("no winning strategy with " + numElements + " elements");
-                break;
+        } catch (CancellationException e) {
+            status = Status.TIMEOUT;
+        } catch (RuntimeException e) {
+            status = Status.FAILED;
+        }
+        long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        return new Result(kind, numFloors, numElements, status, moves, meter.expanded, meter.peakVisited, wallMillis, allocated);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Measures every agent on every floor count and element count.
+     * @param kinds the agents
+     * @param maxNumFloors largest number of floors; counts start at {@link #MIN_FLOORS}
+     * @param maxNumElements largest number of elements
+     * @param numThreads how many cells are measured at once
+     * @return the results, by agent, then floors, then elements
+     */
+    public List<Result> run(List<AgentKind> kinds, int maxNumFloors, int maxNumElements, int numThreads) throws InterruptedException {
+        checkArgument(maxNumFloors >= MIN_FLOORS && maxNumFloors <= Layout.MAX_FLOORS, "maxNumFloors %s", maxNumFloors);
+        checkArgument(maxNumElements >= 1, "maxNumElements %s", maxNumElements);
+        checkArgument(numThreads >= 1, "numThreads %s", numThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Result>> cells = new ArrayList<>();
+            for (AgentKind kind : kinds) {
+                for (int numFloors = MIN_FLOORS; numFloors <= maxNumFloors; numFloors++) {
+                    for (int numElements = 1; numElements <= maxNumElements; numElements++) {
+                        int floors = numFloors, elements = numElements;
+                        cells.add(executor.submit(() -> measure(kind, floors, elements)));
+                    }
+                }
+            }
+            List<Result> results = new ArrayList<>(cells.size());
+            for (Future<Result> cell : cells) {
+                try {
+                    results.add(cell.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("measurement failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void writeCsv(List<Result> results, PrintStream out) {
+        out.println(CSV_HEADER);
+        results.forEach(result -> out.println(result.toCsv()));
+    }
+
+    /**
+     * Usage: {@code Trajectory [MAX_FLOORS [MAX_ELEMENTS [AGENT,... [THREADS [SECONDS]]]]]}
+     * where each AGENT is one of bfs, astar, bidirectional and idastar.
+     * Writes CSV to standard output.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int maxNumFloors = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int maxNumElements = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        List<AgentKind> kinds = new ArrayList<>();
+        if (args.length > 2) {
+            for (String name : args[2].split(",")) {
+                kinds.add(AgentKind.valueOf(name.trim().toUpperCase()));
             }
-            int count = Buildings.countMoves(strategy.get());
-            System.out.format("%d moves to win%n", count);
-            moveCounts.add(count);
+        } else {
+            kinds.addAll(Arrays.asList(AgentKind.values()));
         }
-        System.out.println("trajectory: " + moveCounts);
+        int numThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long timeLimitMillis = TimeUnit.SECONDS.toMillis(args.length > 4 ? Long.parseLong(args[4]) : 60);
+        Trajectory trajectory = new Trajectory(256, timeLimitMillis);
+        writeCsv(trajectory.run(kinds, maxNumFloors, maxNumElements, numThreads), System.out);
     }
 
 }
@@ -0,0 +1,87 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class AStarAgentTest extends AgentTestBase {
+
+    @Test
+    public void playExample() {
+        testPlayExample(new AStarAgent(64));
+    }
+
+    @Test
+    public void knownMovesAway() {
+        testKnownMovesAway(Buildings.oneMoveFromWinning(), 1, new AStarAgent(2));
+        testKnownMovesAway(Buildings.twoMovesFromWinning(), 2, new AStarAgent(3));
+        testKnownMovesAway(Buildings.threeMovesFromWinning(), 3, new AStarAgent(4));
+    }
+
+    @Test
+    public void puzzleInput() {
+        Building b = Buildings.createPuzzleInputBuilding();
+        AStarAgent agent = new AStarAgent(64);
+        testMatchesBreadthFirst(b, agent);
+        BreadthFirstAgent bfs = new BreadthFirstAgent(64);
+        bfs.play(b);
+        System.out.format("A* expanded %d states; BFS expanded %d%n", agent.getNumExpanded(), bfs.getNumExpanded());
+        assertTrue("expands fewer states than BFS", agent.getNumExpanded() < bfs.getNumExpanded());
+    }
+
+    @Test
+    public void lowerBoundIsAdmissible() {
+        Building[] buildings = {
+                Buildings.createExampleBuilding(),
+                Buildings.gameWith4NextMoves(),
+                Buildings.threeMovesFromWinning(),
+                Buildings.createPuzzleInputBuilding(),
+        };
+        for (Building b : buildings) {
+            Optional<List<Building>> path = new BreadthFirstAgent(64).play(b);
+            List<Building> states = path.get();
+            for (int i = 0; i < states.size(); i++) {
+                Building state = states.get(i);
+                int remaining = states.size() - 1 - i;
+                assertTrue(state + " bound exceeds " + remaining, state.getLayout().lowerBound(state.state) <= remaining);
+            }
+        }
+    }
+
+    @Test
+    public void biggerElevator() {
+        Building b = Buildings.build(5)
+                .capacity(3)
+                .add(0, 0)
+                .add(0, 0)
+                .add(1, 1)
+                .add(1, 1)
+                .add(2, 2)
+                .add(3, 3)
+                .finish(0);
+        testMatchesBreadthFirst(b, new AStarAgent(64));
+    }
+
+    @Test
+    public void elevatorOfOne() {
+        Building b = Buildings.build(4)
+                .capacity(1)
+                .add(1, 3)
+                .finish(1);
+        testMatchesBreadthFirst(b, new AStarAgent(64));
+        Building stuck = Buildings.build(4)
+                .capacity(1)
+                .add(0, 0)
+                .finish(0);
+        assertFalse(new BreadthFirstAgent(64).play(stuck).isPresent());
+        assertFalse(new AStarAgent(64).play(stuck).isPresent());
+    }
+
+    @Test
+    public void maxMovesTooSmall() {
+        assertFalse(new AStarAgent(30).play(Buildings.createPuzzleInputBuilding()).isPresent());
+    }
+}
@@ -68,4 +68,23 @@ public class AgentTestBase {
         } else {
             Assert.fail("no strategy found starting from " + b + " with expected = " + expected);
         }
-    }}
\ No newline at end of file
+    }
+
+    protected static void assertValidPath(Building start, List<Building> path) {
+        assertEquals("path starts at start", start.state, path.get(0).state);
+        assertTrue("path ends in win", path.get(path.size() - 1).isWin());
+        for (int i = 1; i < path.size(); i++) {
+            Building previous = path.get(i - 1), next = path.get(i);
+            boolean reachable = previous.findValidMoves().stream().anyMatch(m -> m.to.state == next.state);
+            assertTrue("step " + i + " is a valid move", reachable);
+        }
+    }
+
+    protected void testMatchesBreadthFirst(Building b, Agent agent) {
+        int expected = Buildings.countMoves(new BreadthFirstAgent(agent.maxMoves).play(b).get());
+        Optional<List<Building>> strategy = agent.play(b);
+        assertTrue("result absent", strategy.isPresent());
+        assertEquals("moves count", expected, Buildings.countMoves(strategy.get()));
+        assertValidPath(b, strategy.get());
+    }
+}
\ No newline at end of file
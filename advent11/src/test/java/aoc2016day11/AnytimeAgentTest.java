@@ -0,0 +1,91 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AnytimeAgentTest extends AgentTestBase {
+
+    @Test
+    public void playExample() {
+        testPlayExample(new AnytimeAgent(64));
+    }
+
+    @Test
+    public void knownMovesAway() {
+        testKnownMovesAway(Buildings.oneMoveFromWinning(), 1, new AnytimeAgent(2));
+        testKnownMovesAway(Buildings.twoMovesFromWinning(), 2, new AnytimeAgent(3));
+        testKnownMovesAway(Buildings.threeMovesFromWinning(), 3, new AnytimeAgent(4));
+    }
+
+    @Test
+    public void unlimitedIsOptimal() {
+        Building[] buildings = {
+                Buildings.createExampleBuilding(),
+                Buildings.createPuzzleInputBuilding(),
+                Trajectory.createStart(4, 5),
+        };
+        for (Building b : buildings) {
+            testMatchesBreadthFirst(b, new AnytimeAgent(64));
+            AnytimeAgent.Result result = new AnytimeAgent(64).search(b);
+            System.out.println(result);
+            assertTrue("optimal", result.isOptimal());
+            assertFalse(result.budgetExhausted);
+        }
+    }
+
+    @Test
+    public void expansionBudget() {
+        Building b = Trajectory.createStart(4, 5);
+        int optimal = Buildings.countMoves(new BreadthFirstAgent(64).play(b).get());
+        int previousMoves = Integer.MAX_VALUE, previousBound = 0;
+        for (long budget = 1; budget <= 1 << 16; budget *= 4) {
+            AnytimeAgent.Result result = new AnytimeAgent(64).withExpansionBudget(budget).search(b);
+            System.out.format("budget %d: %s%n", budget, result);
+            assertTrue("expansions within budget", result.numExpanded <= budget);
+            assertTrue("lower bound " + result.lowerBound + " <= " + optimal, result.lowerBound <= optimal);
+            assertTrue("lower bound does not drop", result.lowerBound >= previousBound);
+            previousBound = result.lowerBound;
+            if (result.path.isPresent()) {
+                assertValidPath(b, result.path.get());
+                assertTrue("no shorter than optimal", result.getMoves() >= optimal);
+                assertTrue("no worse with more budget", result.getMoves() <= previousMoves);
+                previousMoves = result.getMoves();
+            }
+            if (!result.budgetExhausted) {
+                assertTrue(result.isOptimal());
+                assertEquals(optimal, result.getMoves());
+            }
+        }
+        assertEquals("found optimal eventually", optimal, previousMoves);
+    }
+
+    @Test
+    public void greedyPassFindsPathQuickly() {
+        Building b = Buildings.createPartTwoPuzzleInputBuilding();
+        AnytimeAgent.Result result = new AnytimeAgent(64).withWeights(16).withExpansionBudget(1000).search(b);
+        System.out.println(result);
+        List<Building> path = result.path.get();
+        assertValidPath(b, path);
+        assertEquals(16.0, result.weight, 0);
+        assertTrue(result.getMoves() >= result.lowerBound);
+    }
+
+    @Test
+    public void timeBudget() {
+        AnytimeAgent.Result result = new AnytimeAgent(64).withTimeBudget(0).search(Buildings.createPuzzleInputBuilding());
+        System.out.println(result);
+        assertTrue(result.budgetExhausted);
+        assertFalse(result.path.isPresent());
+        assertTrue(result.lowerBound <= 31);
+    }
+
+    @Test
+    public void maxMovesTooSmall() {
+        AnytimeAgent.Result result = new AnytimeAgent(30).search(Buildings.createPuzzleInputBuilding());
+        assertFalse(result.path.isPresent());
+        assertEquals("proven no path within max moves", 31, result.lowerBound);
+    }
+}
@@ -0,0 +1,74 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class BatchSolverTest extends AgentTestBase {
+
+    @Test
+    public void matchesBreadthFirst() {
+        List<Building> starts = Arrays.asList(
+                Buildings.createExampleBuilding(),
+                Buildings.build(4).add(1, 1).add(2, 2).finish(2),
+                Buildings.build(4).add(0, 0).add(1, 1).finish(1),
+                Buildings.build(4).add(1, 1).add(0, 0).finish(1),
+                Buildings.build(4).add(3, 3).add(3, 3).finish(3),
+                Buildings.build(4).add(0, 2).add(2, 0).finish(0));
+        List<BatchSolver.Solution> solutions = new BatchSolver(64).solveAll(starts);
+        assertEquals(starts.size(), solutions.size());
+        int previousMoves = 0;
+        for (BatchSolver.Solution solution : solutions) {
+            Optional<List<Building>> expected = new BreadthFirstAgent(64).play(solution.start);
+            assertEquals(solution.start.toString(), expected.isPresent(), solution.path.isPresent());
+            if (expected.isPresent()) {
+                assertEquals(Buildings.countMoves(expected.get()), solution.getMoves());
+                assertValidPath(solution.start, solution.path.get());
+                assertTrue("solutions arrive in order of moves", solution.getMoves() >= previousMoves);
+                previousMoves = solution.getMoves();
+            } else {
+                assertEquals(-1, solution.getMoves());
+            }
+        }
+    }
+
+    @Test
+    public void streamsBeforeSearchEnds() {
+        List<Building> starts = Arrays.asList(Buildings.createPuzzleInputBuilding(), Buildings.gameWith4NextMoves());
+        List<Integer> moves = new ArrayList<>();
+        new BatchSolver(64).solve(starts, solution -> moves.add(solution.getMoves()));
+        assertEquals(2, moves.size());
+        assertTrue("nearer start first", moves.get(0) < moves.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mixedLayouts() {
+        new BatchSolver(64).solveAll(Arrays.asList(Buildings.createExampleBuilding(), Buildings.createPuzzleInputBuilding()));
+    }
+
+    @Test
+    public void validatesBeforeSolving() {
+        List<BatchSolver.Solution> solutions = new ArrayList<>();
+        Building win = Buildings.build(4).add(3, 3).add(3, 3).finish(3);
+        try {
+            new BatchSolver(64).solve(Arrays.asList(win, Buildings.createPuzzleInputBuilding()), solutions::add);
+            fail("mixed layouts accepted");
+        } catch (IllegalArgumentException expected) {
+            assertTrue("nothing emitted", solutions.isEmpty());
+        }
+    }
+
+    @Test
+    public void reportsLevels() {
+        SearchReporter reporter = new SearchReporter(line -> {}, 0);
+        new BatchSolver(64).listenWith(reporter).solveAll(Arrays.asList(Buildings.createExampleBuilding()));
+        assertEquals(11, reporter.getDepth());
+        assertTrue(reporter.getExpanded() > 0);
+        assertTrue(reporter.getDuplicates() <= reporter.getGenerated());
+    }
+}
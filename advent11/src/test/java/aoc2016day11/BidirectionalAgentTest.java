@@ -0,0 +1,39 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class BidirectionalAgentTest extends AgentTestBase {
+
+    @Test
+    public void playExample() {
+        testPlayExample(new BidirectionalAgent(64));
+    }
+
+    @Test
+    public void knownMovesAway() {
+        testKnownMovesAway(Buildings.oneMoveFromWinning(), 1, new BidirectionalAgent(2));
+        testKnownMovesAway(Buildings.twoMovesFromWinning(), 2, new BidirectionalAgent(3));
+        testKnownMovesAway(Buildings.threeMovesFromWinning(), 3, new BidirectionalAgent(4));
+    }
+
+    @Test
+    public void puzzleInput() {
+        testMatchesBreadthFirst(Buildings.createPuzzleInputBuilding(), new BidirectionalAgent(64));
+    }
+
+    @Test
+    public void gameWith4NextMoves() {
+        testMatchesBreadthFirst(Buildings.gameWith4NextMoves(), new BidirectionalAgent(64));
+    }
+
+    @Test
+    public void maxMovesTooSmall() {
+        Optional<List<Building>> result = new BidirectionalAgent(30).play(Buildings.createPuzzleInputBuilding());
+        assertFalse("no path within 30 moves", result.isPresent());
+    }
+}
@@ -1,7 +1,13 @@
 package aoc2016day11;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 
@@ -9,6 +15,9 @@ import static org.junit.Assert.*;
 
 public class BreadthFirstAgentTest extends AgentTestBase {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 
     @Test
     public void oneMoveAway() {
@@ -59,6 +68,103 @@ public class BreadthFirstAgentTest extends AgentTestBase {
         testKnownMovesAway(b, expected, new BreadthFirstAgent(expected + 1));
     }
 
+    @Test
+    public void duplicateDetectionModesAgree() {
+        Building b = Buildings.createPuzzleInputBuilding();
+        BreadthFirstAgent onDequeue = new BreadthFirstAgent(64).detectDuplicates(BreadthFirstAgent.DuplicateDetection.ON_DEQUEUE);
+        BreadthFirstAgent onGenerate = new BreadthFirstAgent(64).detectDuplicates(BreadthFirstAgent.DuplicateDetection.ON_GENERATE);
+        List<Building> onDequeuePath = onDequeue.play(b).get();
+        assertValidPath(b, onDequeuePath);
+        int expected = Buildings.countMoves(onDequeuePath);
+        testKnownMovesAway(b, expected, onGenerate);
+        assertValidPath(b, onGenerate.play(b).get());
+        System.out.format("expanded %d vs %d; peak queue %d vs %d%n", onDequeue.getNumExpanded(), onGenerate.getNumExpanded(), onDequeue.getPeakQueueSize(), onGenerate.getPeakQueueSize());
+        assertTrue("fewer expansions", onGenerate.getNumExpanded() < onDequeue.getNumExpanded());
+        assertTrue("smaller queue", onGenerate.getPeakQueueSize() < onDequeue.getPeakQueueSize());
+    }
+
+    @Test
+    public void pruningRules() {
+        Building[] buildings = {
+                Buildings.createExampleBuilding(),
+                Buildings.gameWith4NextMoves(),
+                Buildings.createPuzzleInputBuilding(),
+        };
+        for (Building b : buildings) {
+            BreadthFirstAgent unpruned = new BreadthFirstAgent(64);
+            int expected = Buildings.countMoves(unpruned.play(b).get());
+            for (PruningRule rule : PruningRule.values()) {
+                BreadthFirstAgent agent = new BreadthFirstAgent(64);
+                agent.usePruner(rule);
+                List<Building> path = agent.play(b).get();
+                assertValidPath(b, path);
+                assertEquals(rule.toString(), expected, Buildings.countMoves(path));
+                System.out.format("%s: expanded %d vs %d unpruned%n", rule, agent.getNumExpanded(), unpruned.getNumExpanded());
+                assertTrue(rule + " expands no more", agent.getNumExpanded() <= unpruned.getNumExpanded());
+            }
+            BreadthFirstAgent agent = new BreadthFirstAgent(64);
+            agent.usePruner(PruningRule.all());
+            testKnownMovesAway(b, expected, agent);
+            System.out.format("all rules: expanded %d vs %d unpruned%n", agent.getNumExpanded(), unpruned.getNumExpanded());
+        }
+    }
+
+    @Test
+    public void checkpointAndResume() throws IOException {
+        Building b = Buildings.createPuzzleInputBuilding();
+        for (BreadthFirstAgent.DuplicateDetection mode : BreadthFirstAgent.DuplicateDetection.values()) {
+            Path checkpoint = temporaryFolder.newFile().toPath();
+            BreadthFirstAgent interrupted = new BreadthFirstAgent(20).detectDuplicates(mode).checkpoint(checkpoint, 0);
+            assertFalse(interrupted.play(b).isPresent());
+            System.out.format("%s: checkpoint is %d bytes%n", mode, Files.size(checkpoint));
+            List<Building> path = new BreadthFirstAgent(64).resume(checkpoint).get();
+            assertEquals(mode.toString(), b, path.get(0));
+            assertValidPath(b, path);
+            assertEquals(mode.toString(), 31, Buildings.countMoves(path));
+        }
+    }
+
+    @Test
+    public void approximateVisited() {
+        Building b = Buildings.createPartTwoPuzzleInputBuilding();
+        BreadthFirstAgent approximate = new BreadthFirstAgent(64).approximateVisited(1 << 17, 0.01);
+        List<Building> actual = approximate.play(b).get();
+        assertValidPath(b, actual);
+        assertEquals(BreadthFirstAgent.VisitedSet.BLOOM_FILTER, approximate.getLastVisitedSet());
+        assertEquals(Buildings.countMoves(new BreadthFirstAgent(64).play(b).get()), Buildings.countMoves(actual));
+        // big enough that the exact tables are sized by the states rather than by their initial capacity
+        Building big = Trajectory.createStart(5, 7);
+        BreadthFirstAgent exact = new BreadthFirstAgent(256);
+        approximate = new BreadthFirstAgent(256).approximateVisited(1 << 18, 0.01, temporaryFolder.getRoot().toPath());
+        List<Building> expected = exact.play(big).get();
+        actual = approximate.play(big).get();
+        assertValidPath(big, actual);
+        assertEquals(Buildings.countMoves(expected), Buildings.countMoves(actual));
+        System.out.format("%d states; %s: %d bytes; %s with frontier: %d bytes%n", exact.getNumExpanded(), exact.getLastVisitedSet(),
+                exact.getLastVisitedBytes(), approximate.getLastVisitedSet(), approximate.getLastVisitedBytes());
+        assertEquals(BreadthFirstAgent.VisitedSet.EXACT, exact.getLastVisitedSet());
+        assertTrue("at least 10x smaller", approximate.getLastVisitedBytes() * 10 <= exact.getLastVisitedBytes());
+        File[] left = temporaryFolder.getRoot().listFiles();
+        assertNotNull(left);
+        assertEquals("level files deleted", 0, left.length);
+        testPlayExample(new BreadthFirstAgent(64).approximateVisited(1024, 0.001));
+        assertFalse(new BreadthFirstAgent(30).approximateVisited(1 << 16, 0.001).play(Buildings.createPuzzleInputBuilding()).isPresent());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void approximateVisitedWithoutCheckpoints() throws IOException {
+        new BreadthFirstAgent(64)
+                .approximateVisited(1024, 0.01)
+                .checkpoint(temporaryFolder.newFile().toPath(), 0)
+                .play(Buildings.createExampleBuilding());
+    }
+
+    @Test
+    public void startIsWin() {
+        Building b = Buildings.build(2).add(1, 1).finish(1);
+        testKnownMovesAway(b, 0, new BreadthFirstAgent(0));
+    }
+
     @Test
     public void test9() {
         Building b = Buildings.gameWith4NextMoves();
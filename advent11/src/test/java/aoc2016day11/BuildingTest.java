@@ -2,6 +2,7 @@ package aoc2016day11;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -100,6 +101,41 @@ public class BuildingTest {
         assertEquals("num moves", 3, moves.size());
     }
 
+    @Test
+    public void findValidMoves_3elementsCapacity3() {
+        Building start = Buildings.build(3)
+                .capacity(3)
+                .add(0, 0)
+                .add(0, 0)
+                .add(0, 0)
+                .finish(0);
+        List<Building.Move> moves = start.findValidMoves();
+        // expect the 3 moves of a two-item elevator, plus m+m+m and g+g+g
+        System.out.println("moves: " + moves);
+        assertEquals("num moves", 5, moves.size());
+        assertEquals("reachable", moves.size(), start.computeReachable(Collections.emptyList()).count());
+    }
+
+    @Test
+    public void moveThreeItems() {
+        Building start = Buildings.build(2)
+                .capacity(3)
+                .add(0, 0)
+                .add(0, 1)
+                .finish(0);
+        Building next = start.move(Direction.UP, Arrays.asList(new Target(0, Kind.G), new Target(0, Kind.M), new Target(1, Kind.M)));
+        assertEquals(Buildings.build(2).capacity(3).add(1, 1).add(1, 1).finish(1), next);
+    }
+
+    @Test(expected = Building.InvalidMoveException.class)
+    public void moveOverCapacity() {
+        Building start = Buildings.build(2)
+                .add(0, 0)
+                .add(0, 1)
+                .finish(0);
+        start.move(Direction.UP, Arrays.asList(new Target(0, Kind.G), new Target(0, Kind.M), new Target(1, Kind.M)));
+    }
+
     @Test
     public void countPossibleStates() {
         Building b = Buildings.createPuzzleInputBuilding();
@@ -130,7 +166,7 @@ public class BuildingTest {
     }
 
     @Test
-    public void computeHash_elevatorPosition() {
+    public void state_elevatorPosition() {
         Building b1 = Buildings.build(2)
                 .add(0, 0)
                 .add(1, 1)
@@ -139,29 +175,57 @@ public class BuildingTest {
                 .add(0, 0)
                 .add(1, 1)
                 .finish(1);
-        assertFalse("hashes equal if elevator on different floor", b1.hash == b2.hash);
+        assertFalse("states equal if elevator on different floor", b1.state == b2.state);
     }
 
 
     @Test
-    public void computeHash_max() {
+    public void state_max() {
         int numFloors = 4;
         Buildings.Builder bb = Buildings.build(numFloors);
         for (int i = 0; i < 6; i++) {
             bb.add(numFloors - 1, numFloors - 1);
         }
         Building b = bb.finish(numFloors - 1);
-        System.out.format("%shash = %d%n", b, b.hash);
+        System.out.format("%sstate = %d%n", b, b.state);
     }
 
 
     @Test
-    public void computeHash_min() {
+    public void state_min() {
         int numFloors = 4;
         Buildings.Builder bb = Buildings.build(numFloors);
         for (int i = 0; i < 6; i++) {
             bb.add(0, 0);
         }
         Building b = bb.finish(numFloors - 1);
-        System.out.format("%shash = %d%n", b, b.hash);
-    }}
\ No newline at end of file
+        System.out.format("%sstate = %d%n", b, b.state);
+    }
+    @Test
+    public void canonical_pairSwap() {
+        Building b1 = Buildings.build(4)
+                .add(1, 0)
+                .add(2, 2)
+                .add(0, 3)
+                .finish(0);
+        Building b2 = Buildings.build(4)
+                .add(0, 3)
+                .add(1, 0)
+                .add(2, 2)
+                .finish(0);
+        assertEquals("canonical", b1.canonical, b2.canonical);
+        Building b3 = Buildings.build(4)
+                .add(0, 1)
+                .add(2, 2)
+                .add(0, 3)
+                .finish(0);
+        assertNotEquals("canonical with microchip and generator swapped", b1.canonical, b3.canonical);
+    }
+
+    @Test
+    public void canonical_elevatorPosition() {
+        Building b1 = Buildings.build(2).add(0, 0).add(1, 1).finish(0);
+        Building b2 = Buildings.build(2).add(0, 0).add(1, 1).finish(1);
+        assertNotEquals(b1.canonical, b2.canonical);
+    }
+}
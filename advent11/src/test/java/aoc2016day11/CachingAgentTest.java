@@ -0,0 +1,160 @@
+package aoc2016day11;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CachingAgentTest extends AgentTestBase {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The puzzle input with its elements in another order, so that it has
+     * the same canonical form but different labels.
+     */
+    private static Building permutedPuzzleInput() {
+        return Buildings.build(4)
+                .add(0, 0)
+                .add(1, 0)
+                .add(2, 2)
+                .add(1, 0)
+                .add(2, 2)
+                .finish(0);
+    }
+
+    @Test
+    public void playExample() {
+        testPlayExample(new CachingAgent(new BreadthFirstAgent(64), new SolutionCache(8)));
+    }
+
+    @Test
+    public void repeatedSolveIsLookup() {
+        CachingAgent agent = new CachingAgent(new AStarAgent(64), new SolutionCache(8));
+        testMatchesBreadthFirst(Buildings.createPuzzleInputBuilding(), agent);
+        Building permuted = permutedPuzzleInput();
+        assertNotEquals(Buildings.createPuzzleInputBuilding().state, permuted.state);
+        List<Building> path = agent.play(permuted).get();
+        assertValidPath(permuted, path);
+        assertEquals(31, Buildings.countMoves(path));
+        assertEquals(1, agent.getHits());
+        assertEquals(1, agent.getMisses());
+        assertFalse("over move limit", new CachingAgent(new AStarAgent(30), new SolutionCache(8)).play(permuted).isPresent());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws Exception {
+        SolutionCache cache = new SolutionCache(2);
+        Agent agent = new BreadthFirstAgent(64);
+        Building a = Buildings.oneMoveFromWinning(), b = Buildings.twoMovesFromWinning(), c = Buildings.threeMovesFromWinning();
+        cache.put(agent.play(a).get());
+        cache.put(agent.play(b).get());
+        assertTrue(cache.get(a).isPresent());
+        cache.put(agent.play(c).get());
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(a).isPresent());
+        assertFalse("evicted", cache.get(b).isPresent());
+        assertTrue(cache.get(c).isPresent());
+    }
+
+    @Test
+    public void persists() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("solutions");
+        Building start = Buildings.createPuzzleInputBuilding();
+        try (SolutionCache cache = SolutionCache.open(file, 8)) {
+            CachingAgent first = new CachingAgent(new BreadthFirstAgent(64), cache);
+            first.play(start);
+            first.play(Buildings.createExampleBuilding());
+        }
+        System.out.format("%d bytes for 2 solutions%n", file.toFile().length());
+        try (SolutionCache cache = SolutionCache.open(file, 8)) {
+            CachingAgent second = new CachingAgent(new BreadthFirstAgent(64), cache);
+            List<Building> path = second.play(permutedPuzzleInput()).get();
+            assertValidPath(permutedPuzzleInput(), path);
+            assertEquals(31, Buildings.countMoves(path));
+            assertEquals(1, second.getHits());
+            assertEquals(0, second.getMisses());
+        }
+    }
+
+    @Test
+    public void persistsOrderOfUse() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("solutions");
+        Agent agent = new BreadthFirstAgent(64);
+        Building a = Buildings.oneMoveFromWinning(), b = Buildings.twoMovesFromWinning(), c = Buildings.threeMovesFromWinning();
+        try (SolutionCache cache = SolutionCache.open(file, 2)) {
+            cache.put(agent.play(a).get());
+            cache.put(agent.play(b).get());
+            for (int i = 0; i < 20; i++) {
+                assertTrue(cache.get(a).isPresent());
+            }
+        }
+        System.out.format("%d bytes after 20 uses%n", file.toFile().length());
+        try (SolutionCache cache = SolutionCache.open(file, 2)) {
+            cache.put(agent.play(c).get());
+            assertTrue(cache.get(a).isPresent());
+            assertFalse("evicted", cache.get(b).isPresent());
+        }
+    }
+
+    @Test
+    public void persistsEviction() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("solutions");
+        Agent agent = new BreadthFirstAgent(64);
+        Building a = Buildings.oneMoveFromWinning(), b = Buildings.twoMovesFromWinning(), c = Buildings.threeMovesFromWinning();
+        try (SolutionCache cache = SolutionCache.open(file, 2)) {
+            cache.put(agent.play(a).get());
+            cache.put(agent.play(b).get());
+            cache.put(agent.play(c).get());
+        }
+        try (SolutionCache cache = SolutionCache.open(file, 8)) {
+            assertEquals(2, cache.size());
+            assertFalse("evicted", cache.get(a).isPresent());
+            assertTrue(cache.get(b).isPresent());
+            assertTrue(cache.get(c).isPresent());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCorruptLayout() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("solutions");
+        try (SolutionCache cache = SolutionCache.open(file, 8)) {
+            cache.put(new BreadthFirstAgent(64).play(Buildings.createExampleBuilding()).get());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // header and type, then the number of floors
+            raf.seek(4 + 1);
+            raf.writeInt(0);
+        }
+        SolutionCache.open(file, 8).close();
+    }
+
+    @Test
+    public void rejectsInvalidPath() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("solutions");
+        Building start = Buildings.createExampleBuilding();
+        try (SolutionCache cache = SolutionCache.open(file, 8)) {
+            cache.put(new BreadthFirstAgent(64).play(start).get());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // header, then type, floors, elements, capacity, start and length of the one record
+            raf.seek(4 + 1 + 3 * 4 + 8 + 4);
+            raf.writeLong(start.canonical);
+        }
+        try (SolutionCache corrupt = SolutionCache.open(file, 8)) {
+            assertEquals(1, corrupt.size());
+            assertFalse(corrupt.get(start).isPresent());
+            assertEquals("invalid entry removed", 0, corrupt.size());
+        }
+        try (SolutionCache reopened = SolutionCache.open(file, 8)) {
+            assertEquals("removal persisted", 0, reopened.size());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentLongLongHashMapTest {
+
+    @Test
+    public void putIfAbsent() {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap();
+        assertTrue(map.putIfAbsent(0L, 7L));
+        assertFalse(map.putIfAbsent(0L, 8L));
+        assertTrue(map.putIfAbsent(5L, 9L));
+        assertEquals(7L, map.get(0L));
+        assertEquals(9L, map.get(5L));
+        assertFalse(map.containsKey(6L));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void concurrentClaimsAreExclusive() {
+        ConcurrentLongLongHashMap map = new ConcurrentLongLongHashMap(16, 0);
+        int n = 100_000, threads = 8;
+        AtomicLong claimed = new AtomicLong();
+        LongStream.range(0, threads).parallel().forEach(thread -> {
+            for (long key = 0; key < n; key++) {
+                if (map.putIfAbsent(key * 31, thread)) {
+                    claimed.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(n, claimed.get());
+        assertEquals(n, map.size());
+        for (long key = 0; key < n; key++) {
+            long owner = map.get(key * 31);
+            assertTrue(owner >= 0 && owner < threads);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package aoc2016day11;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ExternalBreadthFirstAgentTest extends AgentTestBase {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ExternalBreadthFirstAgent agent(int maxMoves, int bufferSize) throws IOException {
+        return new ExternalBreadthFirstAgent(maxMoves, temporaryFolder.getRoot().toPath(), bufferSize);
+    }
+
+    @Test
+    public void playExample() throws IOException {
+        testPlayExample(agent(64, 16));
+    }
+
+    @Test
+    public void knownMovesAway() throws IOException {
+        testKnownMovesAway(Buildings.oneMoveFromWinning(), 1, agent(2, 16));
+        testKnownMovesAway(Buildings.twoMovesFromWinning(), 2, agent(3, 16));
+        testKnownMovesAway(Buildings.threeMovesFromWinning(), 3, agent(4, 16));
+    }
+
+    @Test
+    public void puzzleInput() throws IOException {
+        Building b = Buildings.createPuzzleInputBuilding();
+        ExternalBreadthFirstAgent agent = agent(64, 1000);
+        testMatchesBreadthFirst(b, agent);
+        System.out.format("expanded %d states%n", agent.getNumExpanded());
+        File[] left = temporaryFolder.getRoot().listFiles();
+        assertNotNull(left);
+        assertEquals("level files deleted", 0, left.length);
+    }
+
+    @Test
+    public void reportsDuplicatesWithExpansions() throws IOException {
+        ExternalBreadthFirstAgent agent = agent(64, 1000);
+        long[] totals = new long[3];
+        agent.listenWith(new SearchListener() {
+            @Override
+            public void statesExpanded(long expanded, long generated, long duplicates) {
+                assertTrue(duplicates + " duplicates of " + generated, duplicates <= generated);
+                totals[0] += expanded;
+                totals[1] += generated;
+                totals[2] += duplicates;
+            }
+        });
+        assertTrue(agent.play(Buildings.createPuzzleInputBuilding()).isPresent());
+        System.out.format("expanded %d, generated %d, duplicates %d%n", totals[0], totals[1], totals[2]);
+        assertEquals("expanded", agent.getNumExpanded(), totals[0]);
+        assertTrue("some duplicates", totals[2] > 0);
+    }
+
+    @Test
+    public void maxMovesTooSmall() throws IOException {
+        assertFalse(agent(30, 1000).play(Buildings.createPuzzleInputBuilding()).isPresent());
+    }
+}
@@ -0,0 +1,45 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IdaStarAgentTest extends AgentTestBase {
+
+    @Test
+    public void playExample() {
+        testPlayExample(new IdaStarAgent(64));
+    }
+
+    @Test
+    public void knownMovesAway() {
+        testKnownMovesAway(Buildings.oneMoveFromWinning(), 1, new IdaStarAgent(2));
+        testKnownMovesAway(Buildings.twoMovesFromWinning(), 2, new IdaStarAgent(3));
+        testKnownMovesAway(Buildings.threeMovesFromWinning(), 3, new IdaStarAgent(4));
+    }
+
+    @Test
+    public void puzzleInput() {
+        testMatchesBreadthFirst(Buildings.createPuzzleInputBuilding(), new IdaStarAgent(64));
+    }
+
+    @Test
+    public void puzzleInput_transpositionTable() {
+        IdaStarAgent plain = new IdaStarAgent(64), withTable = new IdaStarAgent(64, 1 << 12);
+        Building b = Buildings.createPuzzleInputBuilding();
+        testMatchesBreadthFirst(b, withTable);
+        plain.play(b);
+        System.out.format("expanded %d without table, %d with%n", plain.getNumExpanded(), withTable.getNumExpanded());
+        assertTrue(withTable.getNumExpanded() <= plain.getNumExpanded());
+    }
+
+    @Test
+    public void maxMovesTooSmall() {
+        assertFalse(new IdaStarAgent(30).play(Buildings.createPuzzleInputBuilding()).isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void transpositionTableSizeNotPowerOfTwo() {
+        new IdaStarAgent(10, 1000);
+    }
+}
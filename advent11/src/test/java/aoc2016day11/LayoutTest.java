@@ -0,0 +1,208 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class LayoutTest {
+
+    @Test
+    public void encode() {
+        Layout layout = new Layout(4, 2);
+        long state = layout.encode(3, new int[]{1, 2}, new int[]{0, 3});
+        assertEquals("elevator", 3, layout.elevator(state));
+        assertEquals("microchip 0", 1, layout.microchip(state, 0));
+        assertEquals("generator 0", 0, layout.generator(state, 0));
+        assertEquals("microchip 1", 2, layout.microchip(state, 1));
+        assertEquals("generator 1", 3, layout.generator(state, 1));
+        assertEquals("bits", 2, layout.bits);
+    }
+
+    @Test
+    public void move() {
+        Layout layout = new Layout(4, 2);
+        long state = layout.encode(1, new int[]{1, 1}, new int[]{1, 0});
+        long up = layout.move(state, 1, Layout.item(0, Kind.M), Layout.item(1, Kind.M));
+        assertEquals(layout.encode(2, new int[]{2, 2}, new int[]{1, 0}), up);
+        long down = layout.move(up, -1, Layout.item(0, Kind.M), Layout.NO_ITEM);
+        assertEquals(layout.encode(1, new int[]{1, 2}, new int[]{1, 0}), down);
+    }
+
+    @Test
+    public void movedItems() {
+        Layout layout = new Layout(4, 2);
+        long state = layout.encode(1, new int[]{1, 1}, new int[]{1, 0});
+        long items = (1L << Layout.item(0, Kind.M)) | (1L << Layout.item(1, Kind.M));
+        assertEquals(items, layout.movedItems(state, layout.move(state, 1, items)));
+        assertEquals(items, layout.movedItems(state, layout.move(state, -1, items)));
+        assertFalse(layout.isEmptyBelow(state, 1));
+        assertTrue(layout.isEmptyBelow(layout.encode(1, new int[]{1, 1}, new int[]{1, 2}), 1));
+    }
+
+    @Test
+    public void isSafe() {
+        Layout layout = new Layout(4, 2);
+        assertTrue(layout.isSafe(layout.encode(0, new int[]{0, 1}, new int[]{0, 1})));
+        assertTrue(layout.isSafe(layout.encode(0, new int[]{0, 1}, new int[]{2, 3})));
+        assertFalse(layout.isSafe(layout.encode(0, new int[]{0, 0}, new int[]{0, 1})));
+        assertFalse(layout.isSafe(layout.encode(0, new int[]{0, 1}, new int[]{1, 0})));
+    }
+
+    @Test
+    public void isWin() {
+        Layout layout = new Layout(3, 2);
+        assertTrue(layout.isWin(layout.encode(1, new int[]{2, 2}, new int[]{2, 2})));
+        assertFalse(layout.isWin(layout.encode(2, new int[]{2, 1}, new int[]{2, 2})));
+        assertTrue(layout.isWin(layout.winState()));
+        assertEquals(2, layout.elevator(layout.winState()));
+    }
+
+    @Test
+    public void canonicalize() {
+        Layout layout = new Layout(4, 3);
+        long a = layout.encode(2, new int[]{3, 0, 1}, new int[]{3, 2, 0});
+        long b = layout.encode(2, new int[]{1, 3, 0}, new int[]{0, 3, 2});
+        assertNotEquals(a, b);
+        assertEquals(layout.canonicalize(a), layout.canonicalize(b));
+        long c = layout.canonicalize(a);
+        assertEquals("canonical form is a fixed point", c, layout.canonicalize(c));
+        assertTrue(layout.isSafe(c) == layout.isSafe(a));
+    }
+
+    @Test
+    public void canonicalizeSuccessor() {
+        int numChecked = 0;
+        for (int capacity = 1; capacity <= 3; capacity++) {
+            Layout layout = new Layout(3, 4, capacity);
+            long[] buffer = new long[layout.maxSuccessors()];
+            for (long state = 0; state < 1L << (layout.bits * (1 + layout.numItems())); state++) {
+                if (!layout.isInside(state)) {
+                    continue;
+                }
+                long canonical = layout.canonicalize(state);
+                int count = layout.successors(state, buffer);
+                for (int i = 0; i < count; i++) {
+                    assertEquals(layout + " " + state + " -> " + buffer[i], layout.canonicalize(buffer[i]), layout.canonicalizeSuccessor(state, canonical, buffer[i]));
+                    numChecked++;
+                }
+            }
+        }
+        System.out.format("checked %d successors%n", numChecked);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyElements() {
+        new Layout(4, 32);
+    }
+
+    @Test
+    public void partTwoFits() {
+        Building b = Buildings.createPartTwoPuzzleInputBuilding();
+        assertEquals(7, b.getLayout().numElements);
+        assertEquals("bits used", 30, Long.SIZE - Long.numberOfLeadingZeros(b.getLayout().winState()));
+    }
+
+    @Test
+    public void successorsMatchFindValidMoves() {
+        Building[] buildings = {
+                Buildings.createPuzzleInputBuilding(),
+                Buildings.gameWith4NextMoves(),
+                Buildings.createExampleBuilding(),
+                Buildings.oneMoveFromWinning(),
+        };
+        for (Building b : buildings) {
+            Layout layout = b.getLayout();
+            long[] buffer = new long[layout.maxSuccessors()];
+            int count = layout.successors(b.state, buffer);
+            Set<Long> expected = b.findValidMoves().stream().map(m -> m.to.canonical).collect(Collectors.toSet());
+            Set<Long> actual = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                assertTrue("safe", layout.isSafe(buffer[i]));
+                actual.add(layout.canonicalize(buffer[i]));
+            }
+            assertEquals(b.toString(), expected, actual);
+            List<Long> visited = new ArrayList<>();
+            layout.forEachSuccessor(b.state, visited::add);
+            assertEquals(count, visited.size());
+        }
+    }
+
+    @Test
+    public void successorsAreExactlyTheSafeMoves() {
+        checkSuccessorsOfEveryState(new Layout(3, 3));
+    }
+
+    @Test
+    public void successorsWithBiggerElevator() {
+        checkSuccessorsOfEveryState(new Layout(3, 3, 3));
+        checkSuccessorsOfEveryState(new Layout(2, 3, 6));
+    }
+
+    private static void checkSuccessorsOfEveryState(Layout layout) {
+        long[] buffer = new long[layout.maxSuccessors()];
+        int numChecked = 0;
+        for (long state = 0; state < 1L << (layout.bits * (1 + layout.numItems())); state++) {
+            if (!layout.isInside(state)) {
+                continue;
+            }
+            int elevator = layout.elevator(state);
+            long onFloor = layout.itemsOn(state, elevator);
+            Set<Long> expected = new HashSet<>();
+            for (int offset : new int[]{1, -1}) {
+                if (!layout.isInside(elevator + offset)) {
+                    continue;
+                }
+                for (long load = onFloor; load != 0; load = (load - 1) & onFloor) {
+                    if (Long.bitCount(load) <= layout.capacity && Layout.isSafeTogether(load)) {
+                        expected.add(layout.move(state, offset, load));
+                    }
+                }
+            }
+            expected.removeIf(s -> !layout.isSafe(s));
+            int count = layout.successors(state, buffer);
+            Set<Long> actual = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                actual.add(buffer[i]);
+            }
+            assertEquals(layout.toString() + " " + state, expected, actual);
+            assertEquals("no repeats", count, actual.size());
+            numChecked++;
+        }
+        System.out.format("checked successors of %d states of %s%n", numChecked, layout);
+    }
+
+    @Test
+    public void lowerBoundIsConsistent() {
+        for (int capacity = 1; capacity <= 4; capacity++) {
+            Layout layout = new Layout(4, 3, capacity);
+            Tablebase tablebase = Tablebase.build(layout);
+            long[] buffer = new long[layout.maxSuccessors()];
+            for (long state = 0; state < 1L << (layout.bits * (1 + layout.numItems())); state++) {
+                if (!layout.isSafe(state)) {
+                    continue;
+                }
+                int bound = layout.lowerBound(state), distance = tablebase.distance(state);
+                assertTrue(layout + " " + state, distance == Tablebase.UNREACHABLE || bound <= distance);
+                int count = layout.successors(state, buffer);
+                for (int i = 0; i < count; i++) {
+                    assertTrue("consistent", bound <= 1 + layout.lowerBound(buffer[i]));
+                }
+            }
+            assertEquals(0, layout.lowerBound(layout.winState()));
+        }
+    }
+
+    @Test
+    public void countCanonicalStates() {
+        assertEquals(new CanonicalIndex(new Layout(4, 7)).size, new Layout(4, 7).countCanonicalStates());
+        assertEquals("3 floors * multisets of 2 from 9 codes", 3 * 45, new Layout(3, 2).countCanonicalStates());
+        assertEquals("64 floors * multisets of 4 from 4096 codes", 64 * 11745311589376L, new Layout(64, 4).countCanonicalStates());
+        assertEquals("2 floors * multisets of 31 from 4 codes", 2 * 5984, new Layout(2, 31).countCanonicalStates());
+    }
+}
@@ -0,0 +1,44 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongBloomFilterTest {
+
+    @Test
+    public void noFalseNegatives() {
+        LongBloomFilter filter = new LongBloomFilter(10_000, 0.01);
+        Random random = new Random(11);
+        long[] keys = random.longs(10_000).toArray();
+        for (long key : keys) {
+            filter.add(key);
+        }
+        for (long key : keys) {
+            assertTrue(filter.mightContain(key));
+        }
+        assertFalse("adding again", filter.add(keys[0]));
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        int n = 100_000;
+        double rate = 0.01;
+        LongBloomFilter filter = new LongBloomFilter(n, rate);
+        for (long key = 0; key < n; key++) {
+            filter.add(key);
+        }
+        int falsePositives = 0;
+        for (long key = n; key < 2 * n; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+        double observed = falsePositives / (double) n;
+        System.out.format("%d bytes, %d hashes, observed rate %.4f, expected %.4f%n", filter.sizeInBytes(), filter.numHashes(), observed, filter.expectedFalsePositiveRate());
+        assertTrue("observed rate " + observed, observed < 1.5 * rate);
+        assertTrue("size " + filter.size(), filter.size() > n * (1 - rate));
+    }
+}
@@ -0,0 +1,51 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class LongHashSetTest {
+
+    @Test
+    public void addAndContains() {
+        LongHashSet set = new LongHashSet(4);
+        assertTrue(set.add(5L));
+        assertFalse(set.add(5L));
+        assertTrue(set.contains(5L));
+        assertFalse(set.contains(6L));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void zero() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+        set.clear();
+        assertFalse(set.contains(0L));
+        assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void growsLikeHashSet() {
+        LongHashSet set = new LongHashSet(2, 0.75f);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(50000) * 0x10001L;
+            assertEquals("add " + key, expected.add(key), set.add(key));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long key : expected) {
+            assertTrue(set.contains(key));
+        }
+        assertTrue("capacity respects load factor", set.size() <= set.capacity() * 0.75f);
+    }
+}
@@ -0,0 +1,58 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongLongHashMapTest {
+
+    @Test
+    public void putIfAbsent() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        assertTrue(map.putIfAbsent(7L, 1L));
+        assertFalse(map.putIfAbsent(7L, 2L));
+        assertEquals(1L, map.get(7L));
+        map.put(7L, 3L);
+        assertEquals(3L, map.get(7L));
+        assertEquals(-1L, map.get(8L, -1L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void zeroKey() {
+        LongLongHashMap map = new LongLongHashMap();
+        assertFalse(map.containsKey(0L));
+        assertTrue(map.putIfAbsent(0L, 5L));
+        assertEquals(5L, map.get(0L));
+        map.put(0L, 6L);
+        assertEquals(6L, map.get(0L));
+        assertEquals(1, map.size());
+        map.forEach((key, value) -> assertEquals(6L, value));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getAbsent() {
+        new LongLongHashMap().get(42L);
+    }
+
+    @Test
+    public void growsLikeHashMap() {
+        LongLongHashMap map = new LongLongHashMap(2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(10);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(40000) * 0x10001L, value = random.nextLong();
+            assertEquals(!expected.containsKey(key), map.putIfAbsent(key, value));
+            expected.putIfAbsent(key, value);
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value.longValue(), map.get(key)));
+        Map<Long, Long> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,37 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ParallelBreadthFirstAgentTest extends AgentTestBase {
+
+    @Test
+    public void playExample() {
+        testPlayExample(new ParallelBreadthFirstAgent(64));
+    }
+
+    @Test
+    public void knownMovesAway() {
+        testKnownMovesAway(Buildings.oneMoveFromWinning(), 1, new ParallelBreadthFirstAgent(2));
+        testKnownMovesAway(Buildings.twoMovesFromWinning(), 2, new ParallelBreadthFirstAgent(3));
+        testKnownMovesAway(Buildings.threeMovesFromWinning(), 3, new ParallelBreadthFirstAgent(4));
+    }
+
+    @Test
+    public void puzzleInput() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            testMatchesBreadthFirst(Buildings.createPuzzleInputBuilding(), new ParallelBreadthFirstAgent(64, pool, 8));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void maxMovesTooSmall() {
+        assertFalse(new ParallelBreadthFirstAgent(30).play(Buildings.createPuzzleInputBuilding()).isPresent());
+    }
+}
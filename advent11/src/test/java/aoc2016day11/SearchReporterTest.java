@@ -0,0 +1,58 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SearchReporterTest {
+
+    @Test
+    public void breadthFirst() {
+        List<String> lines = new ArrayList<>();
+        SearchReporter reporter = new SearchReporter(lines::add, 0);
+        BreadthFirstAgent agent = new BreadthFirstAgent(64);
+        agent.listenWith(reporter);
+        List<Building> path = agent.play(Buildings.createPuzzleInputBuilding()).get();
+        reporter.report();
+        lines.forEach(System.out::println);
+        assertEquals("expanded", agent.getNumExpanded(), reporter.getExpanded());
+        assertEquals("last level", Buildings.countMoves(path) - 1, reporter.getDepth());
+        assertTrue("some duplicates", reporter.getDuplicates() > 0);
+        assertTrue("duplicate ratio", reporter.getDuplicateRatio() > 0 && reporter.getDuplicateRatio() < 1);
+        assertTrue("one report per event", lines.size() > 31);
+    }
+
+    @Test
+    public void parallel() {
+        SearchReporter reporter = new SearchReporter(line -> {}, 0);
+        ParallelBreadthFirstAgent agent = new ParallelBreadthFirstAgent(64);
+        agent.listenWith(reporter);
+        agent.play(Buildings.createPuzzleInputBuilding());
+        assertEquals("expanded", agent.getNumExpanded(), reporter.getExpanded());
+        assertTrue("visited", reporter.getVisitedSize() > reporter.getFrontierSize());
+    }
+
+    @Test
+    public void interval() {
+        List<String> lines = new ArrayList<>();
+        SearchReporter reporter = new SearchReporter(lines::add, 60 * 60 * 1000);
+        new AStarAgent(64).listenWith(reporter).play(Buildings.createPuzzleInputBuilding());
+        assertTrue("nothing reported within the interval", lines.isEmpty());
+        assertTrue("still counted", reporter.getExpanded() > 0);
+    }
+
+    @Test
+    public void summaryAtEnd() {
+        List<String> lines = new ArrayList<>();
+        SearchReporter reporter = new SearchReporter(lines::add, 60 * 60 * 1000);
+        new BreadthFirstAgent(64).listenWith(reporter).play(Buildings.createPuzzleInputBuilding());
+        new BreadthFirstAgent(64).approximateVisited(1 << 16, 0.001).listenWith(reporter).play(Buildings.createPuzzleInputBuilding());
+        lines.forEach(System.out::println);
+        assertEquals("counts and summary of each play", 4, lines.size());
+        assertTrue(lines.get(1), lines.get(1).startsWith("EXACT, ON_GENERATE: "));
+        assertTrue(lines.get(3), lines.get(3).contains("states in Bloom filter"));
+    }
+}
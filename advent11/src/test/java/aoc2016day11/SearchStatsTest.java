@@ -0,0 +1,126 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.*;
+
+public class SearchStatsTest {
+
+    private static final int CANCEL_DEPTH = 10;
+
+    @Test
+    public void readAndCancelThroughMBeanServer() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName(SearchStats.DOMAIN + ":type=Search,*");
+        List<String> seen = new ArrayList<>();
+        BreadthFirstAgent agent = new BreadthFirstAgent(64);
+        SearchListener canceller = new SearchListener() {
+            @Override
+            public void depthReached(int depth, long frontierSize, long visitedSize) {
+                if (depth == CANCEL_DEPTH) {
+                    try {
+                        Set<ObjectName> names = server.queryNames(pattern, null);
+                        assertEquals("registered", 1, names.size());
+                        ObjectName name = names.iterator().next();
+                        seen.add(name.toString());
+                        seen.add("depth=" + server.getAttribute(name, "Depth"));
+                        seen.add("visited=" + server.getAttribute(name, "VisitedCount"));
+                        server.invoke(name, "cancel", new Object[0], new String[0]);
+                    } catch (JMException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+        };
+        agent.listenWith(canceller).monitorWith(server);
+        try {
+            agent.play(Buildings.createPartTwoPuzzleInputBuilding());
+            fail("not cancelled");
+        } catch (CancellationException expected) {
+            System.out.println(expected);
+        }
+        seen.forEach(System.out::println);
+        assertEquals("depth=" + CANCEL_DEPTH, seen.get(1));
+        assertTrue("unregistered", server.queryNames(pattern, null).isEmpty());
+        assertSame("listener restored", canceller, agent.getListener());
+    }
+
+    @Test
+    public void monitoredFromAnyEntryPoint() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName pattern = new ObjectName(SearchStats.DOMAIN + ":type=Search,*");
+        Set<String> agents = new TreeSet<>();
+        SearchListener watcher = new SearchListener() {
+            @Override
+            public void depthReached(int depth, long frontierSize, long visitedSize) {
+                visitedSizeUpdated(visitedSize);
+            }
+
+            @Override
+            public void visitedSizeUpdated(long visitedSize) {
+                for (ObjectName name : server.queryNames(pattern, null)) {
+                    agents.add(name.getKeyProperty("agent"));
+                }
+            }
+        };
+        Building building = Buildings.createPuzzleInputBuilding();
+        new AStarAgent(64).listenWith(watcher).monitorWith(server).play(building);
+        new BatchSolver(64).listenWith(watcher).monitorWith(server).solveAll(Collections.singletonList(building));
+        AnytimeAgent anytime = new AnytimeAgent(64);
+        anytime.listenWith(watcher).monitorWith(server);
+        anytime.search(building);
+        System.out.println(agents);
+        assertEquals("[\"AStarAgent\", \"AnytimeAgent\", \"BatchSolver\"]", agents.toString());
+        assertTrue("unregistered", server.queryNames(pattern, null).isEmpty());
+    }
+
+    @Test
+    public void monitorsWhenSystemPropertyIsSet() {
+        assertNull(new BreadthFirstAgent(64).getMBeanServer());
+        System.setProperty(SearchStats.MONITOR_PROPERTY, "true");
+        try {
+            assertSame(ManagementFactory.getPlatformMBeanServer(), new BreadthFirstAgent(64).getMBeanServer());
+        } finally {
+            System.clearProperty(SearchStats.MONITOR_PROPERTY);
+        }
+    }
+
+    @Test
+    public void statistics() {
+        SearchStats stats = new SearchStats("BreadthFirstAgent");
+        BreadthFirstAgent agent = new BreadthFirstAgent(64);
+        agent.listenWith(stats);
+        agent.play(Buildings.createPuzzleInputBuilding());
+        System.out.format("%d expanded in %d ms (%.0f/s)%n", stats.getStatesExpanded(), stats.getElapsedMillis(), stats.getExpansionRate());
+        assertEquals("expanded", agent.getNumExpanded(), stats.getStatesExpanded());
+        assertEquals("depth", 30, stats.getDepth());
+        assertTrue("visited", stats.getVisitedCount() > stats.getFrontierSize());
+        assertTrue("rate", stats.getExpansionRate() > 0);
+        assertFalse(stats.isCancelRequested());
+    }
+
+    @Test
+    public void combine() {
+        SearchStats a = new SearchStats("a"), b = new SearchStats("b");
+        SearchListener both = SearchListener.combine(a, SearchListener.NONE, b);
+        both.statesExpanded(3, 10, 2);
+        both.depthReached(4, 5, 6);
+        assertEquals(3, a.getStatesExpanded());
+        assertEquals(4, b.getDepth());
+        assertFalse(both.isCancelled());
+        b.cancel();
+        assertTrue(both.isCancelled());
+        assertSame(a, SearchListener.combine(SearchListener.NONE, a));
+    }
+}
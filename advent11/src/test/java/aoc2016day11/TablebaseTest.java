@@ -0,0 +1,81 @@
+package aoc2016day11;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TablebaseTest extends AgentTestBase {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void canonicalIndexIsDense() {
+        Layout layout = new Layout(3, 2);
+        CanonicalIndex index = new CanonicalIndex(layout);
+        assertEquals("3 floors * multisets of 2 from 9 codes", 3 * 45, index.size);
+        boolean[] seen = new boolean[(int) index.size];
+        for (int elevator = 0; elevator < 3; elevator++) {
+            for (int code1 = 0; code1 < 9; code1++) {
+                for (int code2 = code1; code2 < 9; code2++) {
+                    long state = layout.canonicalize(layout.encode(elevator, new int[]{code1 / 3, code2 / 3}, new int[]{code1 % 3, code2 % 3}));
+                    int rank = (int) index.rank(state);
+                    assertFalse("rank " + rank + " used twice", seen[rank]);
+                    seen[rank] = true;
+                }
+            }
+        }
+    }
+
+    @Test
+    public void example() {
+        Building b = Buildings.createExampleBuilding();
+        Tablebase tablebase = Tablebase.build(b.getLayout());
+        assertEquals(11, tablebase.distance(b));
+        testPlayExample(new TablebaseAgent(64, tablebase));
+    }
+
+    @Test
+    public void puzzleInput() {
+        Building b = Buildings.createPuzzleInputBuilding();
+        testMatchesBreadthFirst(b, new TablebaseAgent(64, Tablebase.build(b.getLayout())));
+    }
+
+    @Test
+    public void writeAndLoad() throws IOException {
+        Building b = Buildings.gameWith4NextMoves();
+        Tablebase built = Tablebase.build(b.getLayout());
+        File file = temporaryFolder.newFile();
+        built.write(file.toPath());
+        Tablebase loaded = Tablebase.load(file.toPath());
+        assertEquals(built.getLayout(), loaded.getLayout());
+        List<Building> path = loaded.solve(b).get();
+        assertValidPath(b, path);
+        assertEquals(built.distance(b), Buildings.countMoves(path));
+        for (Building state : path) {
+            assertEquals(built.distance(state), loaded.distance(state));
+        }
+    }
+
+    @Test
+    public void unreachable() {
+        Building b = Buildings.build(2).add(0, 1).add(1, 0).finish(0);
+        Tablebase tablebase = Tablebase.build(b.getLayout());
+        assertEquals(Tablebase.UNREACHABLE, tablebase.distance(b));
+        assertFalse(tablebase.solve(b).isPresent());
+    }
+
+    @Test(expected = IOException.class)
+    public void loadNotATablebase() throws IOException {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), new byte[64]);
+        Tablebase.load(file.toPath());
+    }
+}
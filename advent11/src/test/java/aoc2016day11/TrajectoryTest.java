@@ -0,0 +1,67 @@
+package aoc2016day11;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrajectoryTest {
+
+    @Test
+    public void run() throws Exception {
+        List<Trajectory.AgentKind> kinds = Arrays.asList(Trajectory.AgentKind.BFS, Trajectory.AgentKind.ASTAR);
+        List<Trajectory.Result> results = new Trajectory(64, 60_000).run(kinds, 4, 3, 2);
+        Trajectory.writeCsv(results, System.out);
+        assertEquals(2 * 3 * 3, results.size());
+        for (int i = 0; i < results.size() / 2; i++) {
+            Trajectory.Result bfs = results.get(i), astar = results.get(i + results.size() / 2);
+            assertEquals(Trajectory.Status.SOLVED, bfs.status);
+            assertEquals(bfs.numFloors, astar.numFloors);
+            assertEquals(bfs.numElements, astar.numElements);
+            assertEquals(bfs + " vs " + astar, bfs.moves, astar.moves);
+            assertTrue(bfs.expanded > 0);
+            assertTrue(bfs.peakVisited > 0);
+            assertTrue(astar + " peak visited", astar.peakVisited > 0);
+        }
+        Trajectory.Result last = results.get(results.size() / 2 - 1);
+        assertEquals(4, last.numFloors);
+        assertEquals(3, last.numElements);
+        assertEquals(27, last.moves);
+    }
+
+    @Test
+    public void peakVisitedForEveryAgent() {
+        Trajectory trajectory = new Trajectory(64, 60_000);
+        for (Trajectory.AgentKind kind : Trajectory.AgentKind.values()) {
+            Trajectory.Result result = trajectory.measure(kind, 4, 2);
+            System.out.println(result);
+            assertEquals(Trajectory.Status.SOLVED, result.status);
+            assertTrue(kind + " peak visited", result.peakVisited > 0);
+        }
+    }
+
+    @Test
+    public void measuresEveryCell() throws Exception {
+        List<Trajectory.Result> results = new Trajectory(256, 600_000, 5000).run(Arrays.asList(Trajectory.AgentKind.BFS), 4, 7, 2);
+        Trajectory.writeCsv(results, System.out);
+        assertEquals("cells past a timeout are still measured", 3 * 7, results.size());
+        assertEquals(Trajectory.Status.SOLVED, results.get(0).status);
+        Trajectory.Result underLimit = results.get(2 * 7 + 4);
+        assertEquals(5, underLimit.numElements);
+        assertEquals("4323 expansions", Trajectory.Status.SOLVED, underLimit.status);
+        Trajectory.Result last = results.get(results.size() - 1);
+        assertEquals(4, last.numFloors);
+        assertEquals(7, last.numElements);
+        assertEquals(Trajectory.Status.TIMEOUT, last.status);
+    }
+
+    @Test
+    public void stopsAtTimeout() {
+        Trajectory.Result result = new Trajectory(256, 1).measure(Trajectory.AgentKind.BFS, 4, 7);
+        System.out.println(result);
+        assertEquals(Trajectory.Status.TIMEOUT, result.status);
+        assertEquals(-1, result.moves);
+    }
+}